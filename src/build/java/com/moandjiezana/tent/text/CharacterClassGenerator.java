@@ -0,0 +1,133 @@
+package com.moandjiezana.tent.text;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Generates CharacterClasses.java, lookup tables for the character classes defined in {@link Regex}, so that the
+ * hand-coded scanners in {@link Extractor} don't need to compile or run regular expressions.
+ * <p/>
+ * Membership of every character in the Basic Multilingual Plane is evaluated with java.util.regex at build time, so the
+ * tables follow Regex exactly, including case-insensitivity and Unicode blocks.
+ * <p/>
+ * Run during the generate-sources phase with the output source directory as its only argument.
+ */
+public class CharacterClassGenerator {
+
+  private static final String PACKAGE = "com.moandjiezana.tent.text";
+  private static final String CLASS_NAME = "CharacterClasses";
+
+  private static final class CharacterClass {
+    final String method;
+    final String constant;
+    final String definition;
+    final int flags;
+
+    CharacterClass(String method, String constant, String definition, int flags) {
+      this.method = method;
+      this.constant = constant;
+      this.definition = definition;
+      this.flags = flags;
+    }
+  }
+
+  private static final CharacterClass[] CHARACTER_CLASSES = {
+    new CharacterClass("isUnicodeSpace", "UNICODE_SPACE", Regex.UNICODE_SPACES, 0),
+    new CharacterClass("isLatinAccent", "LATIN_ACCENT", "[" + Regex.LATIN_ACCENTS_CHARS + "]", 0),
+    new CharacterClass("isHashtagAlpha", "HASHTAG_ALPHA", "[" + Regex.HASHTAG_ALPHA_CHARS + "]", Pattern.CASE_INSENSITIVE),
+    new CharacterClass("isHashtagAlphaNumeric", "HASHTAG_ALPHA_NUMERIC", "[" + Regex.HASHTAG_ALPHA_NUMERIC_CHARS + "]", Pattern.CASE_INSENSITIVE),
+  };
+
+  public static void main(String[] args) throws IOException {
+    File directory = new File(args[0], PACKAGE.replace('.', File.separatorChar));
+    if (!directory.isDirectory() && !directory.mkdirs()) {
+      throw new IOException("Could not create " + directory);
+    }
+
+    PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(new File(directory, CLASS_NAME + ".java")), "UTF-8"));
+    try {
+      generate(out);
+    } finally {
+      out.close();
+    }
+  }
+
+  static void generate(PrintWriter out) {
+    out.println("package " + PACKAGE + ";");
+    out.println();
+    out.println("import java.util.Arrays;");
+    out.println();
+    out.println("/**");
+    out.println(" * Lookup tables for character classes defined in Regex.");
+    out.println(" * <p/>");
+    out.println(" * Generated by CharacterClassGenerator. Do not edit.");
+    out.println(" */");
+    out.println("final class " + CLASS_NAME + " {");
+
+    for (CharacterClass characterClass : CHARACTER_CLASSES) {
+      Pattern pattern = Pattern.compile(characterClass.definition, characterClass.flags);
+      long low = 0;
+      long high = 0;
+      List<Character> ranges = new ArrayList<Character>();
+      for (int c = 0; c <= Character.MAX_VALUE; c++) {
+        boolean matches = pattern.matcher(String.valueOf((char) c)).matches();
+        if (c < 64 && matches) {
+          low |= 1L << c;
+        } else if (c < 128 && matches) {
+          high |= 1L << (c - 64);
+        } else if (c >= 128) {
+          boolean inRange = ranges.size() % 2 == 1;
+          if (matches && !inRange) {
+            ranges.add((char) c);
+          } else if (!matches && inRange) {
+            ranges.add((char) (c - 1));
+          }
+        }
+      }
+      if (ranges.size() % 2 == 1) {
+        ranges.add(Character.MAX_VALUE);
+      }
+
+      out.println();
+      out.println("  // " + characterClass.definition.replace("\\u", "\\\\u"));
+      out.println("  private static final long " + characterClass.constant + "_LOW = 0x" + Long.toHexString(low) + "L;");
+      out.println("  private static final long " + characterClass.constant + "_HIGH = 0x" + Long.toHexString(high) + "L;");
+      out.print("  private static final char[] " + characterClass.constant + "_RANGES = {");
+      for (int i = 0; i < ranges.size(); i++) {
+        out.print(i % 8 == 0 ? "\n    " : " ");
+        out.print("'\\u" + String.format("%04x", (int) ranges.get(i)) + "',");
+      }
+      out.println();
+      out.println("  };");
+      out.println();
+      out.println("  static boolean " + characterClass.method + "(char c) {");
+      out.println("    if (c < 64) {");
+      out.println("      return (" + characterClass.constant + "_LOW & (1L << c)) != 0;");
+      out.println("    } else if (c < 128) {");
+      out.println("      return (" + characterClass.constant + "_HIGH & (1L << (c - 64))) != 0;");
+      out.println("    }");
+      out.println("    return inRanges(" + characterClass.constant + "_RANGES, c);");
+      out.println("  }");
+    }
+
+    out.println();
+    out.println("  /**");
+    out.println("   * @param ranges inclusive start and end of each range, in ascending order");
+    out.println("   */");
+    out.println("  private static boolean inRanges(char[] ranges, char c) {");
+    out.println("    int index = Arrays.binarySearch(ranges, c);");
+    out.println("    // c is either a range boundary, or falls between the start and end of a range");
+    out.println("    return index >= 0 || (-index - 1) % 2 == 1;");
+    out.println("  }");
+    out.println();
+    out.println("  private " + CLASS_NAME + "() {");
+    out.println("  }");
+    out.println("}");
+  }
+}
@@ -0,0 +1,280 @@
+package com.moandjiezana.tent.text;
+
+import com.moandjiezana.tent.text.Extractor.Entity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Extracts entities from every post of an archive: a UTF-8 file with one post per line.
+ * <p/>
+ * The archive is memory-mapped and split into segments that end on line boundaries. Segments are extracted in
+ * parallel, each into its own buffer, and written out in order. Posts are decoded straight from the mapped file, so
+ * the archive is never copied through a Reader.
+ * <p/>
+ * Each post with entities produces one line of output: the byte offset of the post in the archive, then each entity
+ * as TYPE:start:end, separated by tabs. Indices are in UTF-16 code units of the post, like those of {@link Entity}.
+ * Empty lines are skipped and not counted as posts.
+ */
+public class ArchiveExtractor {
+  /** Default size of the segments an archive is split into */
+  public static final int DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+  /**
+   * Totals of an extraction.
+   */
+  public static class Result {
+    private final long posts;
+    private final long entities;
+    private final long bytes;
+    private final long nanos;
+
+    Result(long posts, long entities, long bytes, long nanos) {
+      this.posts = posts;
+      this.entities = entities;
+      this.bytes = bytes;
+      this.nanos = nanos;
+    }
+
+    public long getPosts() {
+      return posts;
+    }
+
+    public long getEntities() {
+      return entities;
+    }
+
+    public long getBytes() {
+      return bytes;
+    }
+
+    public long getNanos() {
+      return nanos;
+    }
+
+    public double getPostsPerSecond() {
+      return nanos == 0 ? 0 : posts * 1e9 / nanos;
+    }
+
+    public double getMegabytesPerSecond() {
+      return nanos == 0 ? 0 : bytes * 1e9 / nanos / (1024 * 1024);
+    }
+
+    @Override
+    public String toString() {
+      return posts + " posts, " + entities + " entities, " + bytes + " bytes in " + (nanos / 1000000) + "ms ("
+          + Math.round(getPostsPerSecond()) + " posts/s, " + Math.round(getMegabytesPerSecond()) + "MB/s)";
+    }
+  }
+
+  /**
+   * Totals of one segment, and its output.
+   */
+  private static class Segment {
+    long posts;
+    long entities;
+    final ByteArrayOutputStream output = new ByteArrayOutputStream();
+  }
+
+  private final Extractor extractor;
+  private final int threads;
+  private final int segmentSize;
+
+  /**
+   * Uses a new Extractor, one thread per processor and segments of {@link #DEFAULT_SEGMENT_SIZE}.
+   */
+  public ArchiveExtractor() {
+    this(new Extractor(), Runtime.getRuntime().availableProcessors(), DEFAULT_SEGMENT_SIZE);
+  }
+
+  /**
+   * @param extractor shared by all threads, so it must not be reconfigured during an extraction
+   * @param threads number of segments extracted at the same time
+   * @param segmentSize approximate size in bytes of each segment. Segments are extended to the end of their last line.
+   */
+  public ArchiveExtractor(Extractor extractor, int threads, int segmentSize) {
+    if (threads < 1 || segmentSize < 1) {
+      throw new IllegalArgumentException("Threads and segment size must be positive");
+    }
+    this.extractor = extractor;
+    this.threads = threads;
+    this.segmentSize = segmentSize;
+  }
+
+  /**
+   * @param archive UTF-8 file with one post per line
+   * @param output file the entities are written to. It is overwritten.
+   */
+  public Result extract(File archive, File output) throws IOException, InterruptedException {
+    long start = System.nanoTime();
+    RandomAccessFile file = new RandomAccessFile(archive, "r");
+    OutputStream out = new FileOutputStream(output);
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    try {
+      FileChannel channel = file.getChannel();
+      List<Long> boundaries = findSegmentBoundaries(channel);
+
+      LinkedList<Future<Segment>> pending = new LinkedList<Future<Segment>>();
+      Segment totals = new Segment();
+      for (int i = 0; i < boundaries.size() - 1; i++) {
+        pending.add(executor.submit(extractSegment(channel, boundaries.get(i), boundaries.get(i + 1))));
+        // Keep a few segments in flight per thread, so that finished segments don't pile up in memory
+        if (pending.size() > threads * 2) {
+          writeNext(pending, out, totals);
+        }
+      }
+      while (!pending.isEmpty()) {
+        writeNext(pending, out, totals);
+      }
+
+      return new Result(totals.posts, totals.entities, channel.size(), System.nanoTime() - start);
+    } finally {
+      executor.shutdownNow();
+      out.close();
+      file.close();
+    }
+  }
+
+  private static void writeNext(LinkedList<Future<Segment>> pending, OutputStream out, Segment totals) throws IOException,
+      InterruptedException {
+    Segment segment;
+    try {
+      segment = pending.removeFirst().get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      } else if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+    segment.output.writeTo(out);
+    totals.posts += segment.posts;
+    totals.entities += segment.entities;
+  }
+
+  /**
+   * @return the start of each segment, then the end of the archive
+   */
+  private List<Long> findSegmentBoundaries(FileChannel channel) throws IOException {
+    long size = channel.size();
+    List<Long> boundaries = new ArrayList<Long>();
+    boundaries.add(0L);
+    ByteBuffer buffer = ByteBuffer.allocate(8192);
+    long boundary = 0;
+    while (size - boundary > segmentSize) {
+      // Move each boundary forward to the start of the next line
+      long position = boundary + segmentSize;
+      boundary = size;
+      buffer.clear();
+      while (boundary == size && channel.read(buffer, position) > 0) {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+          if (buffer.get() == '\n') {
+            boundary = position + buffer.position();
+            break;
+          }
+        }
+        position += buffer.limit();
+        buffer.clear();
+      }
+      if (boundary < size) {
+        boundaries.add(boundary);
+      }
+    }
+    boundaries.add(size);
+    return boundaries;
+  }
+
+  private Callable<Segment> extractSegment(final FileChannel channel, final long start, final long end) {
+    return new Callable<Segment>() {
+      @Override
+      public Segment call() throws IOException {
+        MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+        Segment segment = new Segment();
+        StringBuilder line = new StringBuilder();
+        // Decodes lines straight from the mapping, replacing malformed input as new String(byte[], Charset) would
+        CharsetDecoder decoder = UTF_8.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+            .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        ByteBuffer bytes = mapped.duplicate();
+        CharBuffer chars = CharBuffer.allocate(1024);
+        int lineStart = 0;
+        int limit = mapped.limit();
+        for (int i = 0; i <= limit; i++) {
+          if (i < limit && mapped.get(i) != '\n') {
+            continue;
+          }
+
+          int lineEnd = i > lineStart && mapped.get(i - 1) == '\r' ? i - 1 : i;
+          int length = lineEnd - lineStart;
+          if (length > 0) {
+            if (chars.capacity() < length) {
+              // UTF-8 never decodes to more chars than bytes
+              chars = CharBuffer.allocate(Math.max(length, chars.capacity() * 2));
+            }
+            bytes.limit(lineEnd).position(lineStart);
+            chars.clear();
+            decoder.reset();
+            decoder.decode(bytes, chars, true);
+            decoder.flush(chars);
+            String post = new String(chars.array(), 0, chars.position());
+            extractPost(post, start + lineStart, segment, line);
+          }
+          lineStart = i + 1;
+        }
+        return segment;
+      }
+    };
+  }
+
+  private void extractPost(String post, long offset, Segment segment, StringBuilder line) {
+    segment.posts++;
+    List<Entity> entities = extractor.extractEntitiesWithIndices(post);
+    if (entities.isEmpty()) {
+      return;
+    }
+
+    segment.entities += entities.size();
+    line.setLength(0);
+    line.append(offset);
+    for (Entity entity : entities) {
+      line.append('\t').append(entity.type).append(':').append(entity.start).append(':').append(entity.end);
+    }
+    line.append('\n');
+    byte[] encoded = line.toString().getBytes(UTF_8);
+    segment.output.write(encoded, 0, encoded.length);
+  }
+
+  /**
+   * Extracts entities from the archive given as the first argument into the file given as the second, and prints
+   * the throughput.
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length != 2) {
+      System.err.println("Usage: ArchiveExtractor <archive> <output>");
+      System.exit(1);
+    }
+    System.out.println(new ArchiveExtractor().extract(new File(args[0]), new File(args[1])));
+  }
+}
@@ -2,9 +2,16 @@ package com.moandjiezana.tent.text;
 
 import com.moandjiezana.tent.text.Extractor.Entity;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * A class for adding HTML links to hashtag, username and list references in Tweet text.
@@ -46,6 +53,14 @@ public class Autolink {
     String link(String mention);
   }
 
+  /**
+   * A MentionLinker whose lookups may be slow, e.g. because they query a profile store.
+   * Returning a Future lets lookups for every mention in a batch of posts run concurrently.
+   */
+  public static interface AsyncMentionLinker {
+    Future<String> link(String mention);
+  }
+
   private String urlClass = null;
   private String listClass;
   private String mentionClass;
@@ -58,28 +73,61 @@ public class Autolink {
   private String invisibleTagAttrs;
   private boolean noFollow = true;
   private boolean mentionIncludeSymbol = false;
-  private String symbolTag = null;
-  private String textWithSymbolTag = null;
+  private String symbolOpenTag = null;
+  private String symbolCloseTag = null;
+  private String textWithSymbolOpenTag = null;
+  private String textWithSymbolCloseTag = null;
   private String urlTarget = null;
   private LinkAttributeModifier linkAttributeModifier = null;
   private LinkTextModifier linkTextModifier = null;
+  private Metrics metrics = null;
+  private SlowCall.Listener slowCallListener = null;
+  private long slowCallThresholdNanos;
 
   private Extractor extractor = new Extractor();
 
   private static CharSequence escapeHTML(CharSequence text) {
-    StringBuilder builder = new StringBuilder(text.length() * 2);
-    for (int i = 0; i < text.length(); i++) {
-      char c = text.charAt(i);
-      switch(c) {
+    int first = indexOfEscapable(text, 0);
+    if (first == -1) {
+      return text;
+    }
+
+    StringBuilder builder = new StringBuilder(text.length() + 16);
+    escapeHTML(text, first, builder);
+    return builder;
+  }
+
+  /**
+   * Appends text to builder, escaping it if necessary. Runs of characters that don't need escaping are appended in bulk.
+   */
+  private static void escapeHTML(CharSequence text, StringBuilder builder) {
+    escapeHTML(text, indexOfEscapable(text, 0), builder);
+  }
+
+  private static void escapeHTML(CharSequence text, int first, StringBuilder builder) {
+    int beginIndex = 0;
+    for (int i = first; i != -1; i = indexOfEscapable(text, beginIndex)) {
+      builder.append(text, beginIndex, i);
+      switch(text.charAt(i)) {
         case '&': builder.append("&amp;"); break;
         case '>': builder.append("&gt;"); break;
         case '<': builder.append("&lt;"); break;
         case '"': builder.append("&quot;"); break;
         case '\'': builder.append("&#39;"); break;
-        default: builder.append(c); break;
       }
+      beginIndex = i + 1;
     }
-    return builder;
+    builder.append(text, beginIndex, text.length());
+  }
+
+  private static int indexOfEscapable(CharSequence text, int fromIndex) {
+    for (int i = fromIndex; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == '&' || c == '>' || c == '<' || c == '"' || c == '\'') {
+        return i;
+      }
+    }
+    return -1;
   }
 
   public Autolink() {
@@ -98,53 +146,89 @@ public class Autolink {
   }
 
   public String escapeBrackets(String text) {
-    int len = text.length();
-    if (len == 0)
-      return text;
-
-    StringBuilder sb = new StringBuilder(len + 16);
-    for (int i = 0; i < len; ++i) {
+    int beginIndex = 0;
+    StringBuilder sb = null;
+    for (int i = 0; i < text.length(); i++) {
       char c = text.charAt(i);
-      if (c == '>')
-        sb.append("&gt;");
-      else if (c == '<')
-        sb.append("&lt;");
-      else
-        sb.append(c);
+      if (c == '>' || c == '<') {
+        if (sb == null) {
+          sb = new StringBuilder(text.length() + 16);
+        }
+        sb.append(text, beginIndex, i).append(c == '>' ? "&gt;" : "&lt;");
+        beginIndex = i + 1;
+      }
     }
-    return sb.toString();
+
+    if (sb == null) {
+      return text;
+    }
+    return sb.append(text, beginIndex, text.length()).toString();
   }
 
   public void linkToText(Entity entity, CharSequence text, Map<String, String> attributes, StringBuilder builder) {
+    appendOpeningLink(entity, attributes, builder);
+    if (linkTextModifier != null) {
+      text = linkTextModifier.modify(entity, text);
+    }
+    builder.append(text).append("</a>");
+  }
+
+  public void linkToTextWithSymbol(Entity entity, CharSequence symbol, CharSequence text, Map<String, String> attributes, StringBuilder builder) {
+    boolean includeSymbol = mentionIncludeSymbol || entity.type != Entity.Type.MENTION;
+
+    if (!includeSymbol) {
+      appendTagged(symbolOpenTag, symbol, symbolCloseTag, builder);
+    }
+
+    if (linkTextModifier != null) {
+      StringBuilder linkText = new StringBuilder(text.length() + 16);
+      appendLinkTextWithSymbol(includeSymbol ? symbol : null, text, linkText);
+      linkToText(entity, linkText, attributes, builder);
+    } else {
+      // Write the link text straight into the output, as nothing needs to see it first.
+      appendOpeningLink(entity, attributes, builder);
+      appendLinkTextWithSymbol(includeSymbol ? symbol : null, text, builder);
+      builder.append("</a>");
+    }
+  }
+
+  private void appendOpeningLink(Entity entity, Map<String, String> attributes, StringBuilder builder) {
     if (noFollow) {
       attributes.put("rel", "nofollow");
     }
     if (linkAttributeModifier != null) {
       linkAttributeModifier.modify(entity, attributes);
     }
-    if (linkTextModifier != null) {
-      text = linkTextModifier.modify(entity, text);
-    }
     // append <a> tag
     builder.append("<a");
     for (Map.Entry<String, String> entry : attributes.entrySet()) {
-      builder.append(" ").append(escapeHTML(entry.getKey())).append("=\"").append(escapeHTML(entry.getValue())).append("\"");
+      builder.append(' ');
+      escapeHTML(entry.getKey(), builder);
+      builder.append("=\"");
+      escapeHTML(entry.getValue(), builder);
+      builder.append('"');
     }
-    builder.append(">").append(text).append("</a>");
+    builder.append('>');
   }
 
-  public void linkToTextWithSymbol(Entity entity, CharSequence symbol, CharSequence text, Map<String, String> attributes, StringBuilder builder) {
-    CharSequence taggedSymbol = symbolTag == null || symbolTag.isEmpty() ? symbol : String.format("<%s>%s</%s>", symbolTag, symbol, symbolTag);
-    text = escapeHTML(text);
-    CharSequence taggedText = textWithSymbolTag == null || textWithSymbolTag.isEmpty() ? text : String.format("<%s>%s</%s>", textWithSymbolTag, text, textWithSymbolTag);
-
-    boolean includeSymbol = mentionIncludeSymbol || !Regex.AT_SIGNS.matcher(symbol).matches();
+  private void appendLinkTextWithSymbol(CharSequence symbol, CharSequence text, StringBuilder builder) {
+    if (symbol != null) {
+      appendTagged(symbolOpenTag, symbol, symbolCloseTag, builder);
+    }
+    if (textWithSymbolOpenTag != null) {
+      builder.append(textWithSymbolOpenTag);
+    }
+    escapeHTML(text, builder);
+    if (textWithSymbolCloseTag != null) {
+      builder.append(textWithSymbolCloseTag);
+    }
+  }
 
-    if (includeSymbol) {
-      linkToText(entity, taggedSymbol.toString() + taggedText, attributes, builder);
+  private static void appendTagged(String openTag, CharSequence text, String closeTag, StringBuilder builder) {
+    if (openTag == null) {
+      builder.append(text);
     } else {
-      builder.append(taggedSymbol);
-      linkToText(entity, taggedText, attributes, builder);
+      builder.append(openTag).append(text).append(closeTag);
     }
   }
 
@@ -173,6 +257,10 @@ public class Autolink {
   }
 
   public void linkToMentionAndList(Entity entity, String text, StringBuilder builder) {
+    linkToMentionAndList(entity, text, builder, usernameLinker);
+  }
+
+  private void linkToMentionAndList(Entity entity, String text, StringBuilder builder, MentionLinker usernameLinker) {
     String mention = entity.getValue();
     // Get the original mention char from text as it could be a full-width char.
     CharSequence atChar = text.subSequence(entity.getStart(), entity.getStart() + 1);
@@ -214,11 +302,56 @@ public class Autolink {
   }
 
   public String autoLinkEntities(String text, List<Entity> entities) {
+    return autoLinkEntities(text, entities, usernameLinker);
+  }
+
+  /**
+   * Extract and encode the entities of a text, to be stored next to it and auto-linked later with
+   * {@link #autoLinkEntities(String, byte[])}. Entities are extracted from the text with its brackets escaped, by the
+   * extractor {@link #autoLink(String)} uses, so that auto-linking them gives the same HTML.
+   *
+   * @param text as it will be stored
+   * @return entities encoded by {@link EntityCodec}
+   */
+  public byte[] encodeEntities(String text) {
+    text = escapeBrackets(text);
+    return EntityCodec.encode(text, extractor.extractEntitiesWithIndices(text));
+  }
+
+  /**
+   * Auto-link entities stored with {@link EntityCodec}, without extracting them again. Brackets in the text are
+   * escaped first, as {@link #autoLink(String)} does, so the offsets of the entities must be those in the escaped text,
+   * extracted with the same settings as autoLink uses: encode them with {@link #encodeEntities(String)}.
+   *
+   * @param text the entities were extracted from, as stored or with its brackets already escaped
+   * @param encodedEntities entities encoded by {@link #encodeEntities(String)}
+   * @return text with auto-link HTML added
+   * @throws IllegalArgumentException if the entities are malformed, overlap, aren't in ascending order or don't fit
+   *           in the text
+   */
+  public String autoLinkEntities(String text, byte[] encodedEntities) {
+    text = escapeBrackets(text);
+    EntityCodec.Cursor cursor = EntityCodec.cursor(encodedEntities);
+    List<Entity> entities = new ArrayList<Entity>();
+    int previousEnd = 0;
+    while (cursor.next()) {
+      // Catch entities stored for another version of the text before they produce broken HTML
+      if (cursor.getStart() < previousEnd || !cursor.fits(text.length())) {
+        throw new IllegalArgumentException("Entity " + cursor.getStart() + "-" + cursor.getEnd() + " doesn't fit in the text");
+      }
+      entities.add(cursor.toEntity(text));
+      previousEnd = cursor.getEnd();
+    }
+    return autoLinkEntities(text, entities, usernameLinker);
+  }
+
+  private String autoLinkEntities(String text, List<Entity> entities, MentionLinker usernameLinker) {
+    long start = metrics == null && slowCallListener == null ? 0 : System.nanoTime();
     StringBuilder builder = new StringBuilder(text.length() * 2);
     int beginIndex = 0;
 
     for (Entity entity : entities) {
-      builder.append(text.subSequence(beginIndex, entity.start));
+      builder.append(text, beginIndex, entity.start);
 
       switch(entity.type) {
         case URL:
@@ -228,7 +361,7 @@ public class Autolink {
           linkToHashtag(entity, text, builder);
           break;
         case MENTION:
-          linkToMentionAndList(entity, text, builder);
+          linkToMentionAndList(entity, text, builder, usernameLinker);
           break;
         case CASHTAG:
           linkToCashtag(entity, text, builder);
@@ -236,8 +369,17 @@ public class Autolink {
      }
       beginIndex = entity.end;
     }
-    builder.append(text.subSequence(beginIndex, text.length()));
+    builder.append(text, beginIndex, text.length());
 
+    if (metrics != null || slowCallListener != null) {
+      long nanos = System.nanoTime() - start;
+      if (metrics != null) {
+        metrics.rendered(text.length(), entities.size(), builder.length(), nanos);
+      }
+      if (slowCallListener != null && nanos >= slowCallThresholdNanos) {
+        slowCallListener.slowCall(new SlowCall(SlowCall.Operation.RENDERING, null, text, entities.size(), nanos));
+      }
+    }
     return builder.toString();
   }
 
@@ -255,6 +397,105 @@ public class Autolink {
     return autoLinkEntities(text, entities);
   }
 
+  /**
+   * Auto-link hashtags, URLs, usernames and lists, resolving mention links with an AsyncMentionLinker.
+   *
+   * @see #autoLink(List, AsyncMentionLinker, long, TimeUnit)
+   */
+  public String autoLink(String text, AsyncMentionLinker mentionLinker, long timeout, TimeUnit unit)
+      throws InterruptedException {
+    return autoLink(Collections.singletonList(text), mentionLinker, timeout, unit).get(0);
+  }
+
+  /**
+   * Auto-link hashtags, URLs, usernames and lists, resolving mention links with an AsyncMentionLinker and waiting as
+   * long as lookups take.
+   *
+   * @see #autoLink(List, AsyncMentionLinker, long, TimeUnit)
+   */
+  public String autoLink(String text, AsyncMentionLinker mentionLinker) throws InterruptedException {
+    return autoLink(Collections.singletonList(text), mentionLinker).get(0);
+  }
+
+  /**
+   * Auto-link hashtags, URLs, usernames and lists in a batch of texts, resolving mention links with an
+   * AsyncMentionLinker and waiting as long as lookups take. A lookup that never completes blocks the batch: prefer
+   * {@link #autoLink(List, AsyncMentionLinker, long, TimeUnit)} when lookups may hang.
+   */
+  public List<String> autoLink(List<String> texts, AsyncMentionLinker mentionLinker) throws InterruptedException {
+    return autoLink(texts, mentionLinker, Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+  }
+
+  /**
+   * Auto-link hashtags, URLs, usernames and lists in a batch of texts, resolving mention links with an
+   * AsyncMentionLinker.
+   * <p/>
+   * Every distinct mention in the batch is looked up exactly once and all lookups are started before waiting for any of
+   * them, so the batch takes roughly as long as its slowest lookup, and at most about the timeout. If a lookup fails,
+   * is cancelled or hasn't completed by the timeout, the mention is linked with the configured MentionLinker instead.
+   * Lookups still running when this method returns or throws are cancelled.
+   *
+   * @param texts to auto-link
+   * @param mentionLinker resolves the href of each distinct mention
+   * @param timeout maximum time to wait for the lookups, once they have all been started
+   * @param unit of the timeout
+   * @return texts with auto-link HTML added, in the same order
+   * @throws InterruptedException if interrupted while waiting for lookups
+   */
+  public List<String> autoLink(List<String> texts, AsyncMentionLinker mentionLinker, long timeout, TimeUnit unit)
+      throws InterruptedException {
+    List<String> escapedTexts = new ArrayList<String>(texts.size());
+    List<List<Entity>> entities = new ArrayList<List<Entity>>(texts.size());
+    Map<String, Future<String>> lookups = new LinkedHashMap<String, Future<String>>();
+    final Map<String, String> hrefs = new LinkedHashMap<String, String>();
+
+    try {
+      for (String text : texts) {
+        String escapedText = escapeBrackets(text);
+        List<Entity> textEntities = extractor.extractEntitiesWithIndices(escapedText);
+        for (Entity entity : textEntities) {
+          if (entity.type == Entity.Type.MENTION && entity.listSlug == null && !lookups.containsKey(entity.value)) {
+            lookups.put(entity.value, mentionLinker.link(entity.value));
+          }
+        }
+        escapedTexts.add(escapedText);
+        entities.add(textEntities);
+      }
+
+      long start = System.nanoTime();
+      long timeoutNanos = unit.toNanos(timeout);
+      for (Map.Entry<String, Future<String>> lookup : lookups.entrySet()) {
+        long remainingNanos = Math.max(0, timeoutNanos - (System.nanoTime() - start));
+        try {
+          hrefs.put(lookup.getKey(), lookup.getValue().get(remainingNanos, TimeUnit.NANOSECONDS));
+        } catch (ExecutionException e) {
+          hrefs.put(lookup.getKey(), usernameLinker.link(lookup.getKey()));
+        } catch (CancellationException e) {
+          hrefs.put(lookup.getKey(), usernameLinker.link(lookup.getKey()));
+        } catch (TimeoutException e) {
+          hrefs.put(lookup.getKey(), usernameLinker.link(lookup.getKey()));
+        }
+      }
+    } finally {
+      // Completed lookups ignore this
+      for (Future<String> lookup : lookups.values()) {
+        lookup.cancel(true);
+      }
+    }
+    MentionLinker resolvedLinker = new MentionLinker() {
+      @Override
+      public String link(String mention) {
+        return hrefs.get(mention);
+      }
+    };
+
+    List<String> linked = new ArrayList<String>(texts.size());
+    for (int i = 0; i < escapedTexts.size(); i++) {
+      linked.add(autoLinkEntities(escapedTexts.get(i), entities.get(i), resolvedLinker));
+    }
+    return linked;
+  }
+
   /**
    * Auto-link the @username and @username/list references in the provided text. Links to @username references will
    * have the usernameClass CSS classes added. Links to @username/list references will have the listClass CSS class
@@ -474,7 +715,9 @@ public class Autolink {
    * @param tag HTML tag without bracket. e.g., "b" or "s"
    */
   public void setSymbolTag(String tag) {
-    this.symbolTag = tag;
+    boolean hasTag = tag != null && !tag.isEmpty();
+    this.symbolOpenTag = hasTag ? "<" + tag + ">" : null;
+    this.symbolCloseTag = hasTag ? "</" + tag + ">" : null;
   }
 
   /**
@@ -483,7 +726,9 @@ public class Autolink {
    * @param tag HTML tag without bracket. e.g., "b" or "s"
    */
   public void setTextWithSymbolTag(String tag) {
-    this.textWithSymbolTag = tag;
+    boolean hasTag = tag != null && !tag.isEmpty();
+    this.textWithSymbolOpenTag = hasTag ? "<" + tag + ">" : null;
+    this.textWithSymbolCloseTag = hasTag ? "</" + tag + ">" : null;
   }
 
   /**
@@ -512,4 +757,25 @@ public class Autolink {
   public void setLinkTextModifier(LinkTextModifier modifier) {
     this.linkTextModifier = modifier;
   }
+
+  /**
+   * Record measurements of rendering, and of the extraction that precedes it.
+   *
+   * @param metrics receiver of measurements, or null to record none (the default)
+   */
+  public void setMetrics(Metrics metrics) {
+    this.metrics = metrics;
+    extractor.setMetrics(metrics);
+  }
+
+  /**
+   * Report each rendering, and each extraction that precedes it, that takes at least the given time.
+   *
+   * @param listener receiver of slow calls, or null to report none (the default)
+   */
+  public void setSlowCallListener(SlowCall.Listener listener, long threshold, TimeUnit unit) {
+    this.slowCallListener = listener;
+    this.slowCallThresholdNanos = unit.toNanos(threshold);
+    extractor.setSlowCallListener(listener, threshold, unit);
+  }
 }
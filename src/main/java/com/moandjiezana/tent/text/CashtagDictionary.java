@@ -0,0 +1,113 @@
+package com.moandjiezana.tent.text;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * A set of known ticker symbols, used by {@link Extractor} to only extract $cashtags that refer to real symbols.
+ * <p/>
+ * Symbols are compared case-insensitively and can be looked up directly in a region of the text being scanned, so
+ * rejecting a candidate doesn't allocate. Instances are immutable and can be shared between threads.
+ */
+public class CashtagDictionary {
+  private final char[][] table;
+  private final int mask;
+  private final int size;
+
+  /**
+   * @param symbols ticker symbols without the leading $ sign, e.g. "AAPL" or "BRK.A"
+   */
+  public CashtagDictionary(Collection<String> symbols) {
+    int capacity = 2;
+    while (capacity < symbols.size() * 2) {
+      capacity <<= 1;
+    }
+    this.table = new char[capacity][];
+    this.mask = capacity - 1;
+
+    int count = 0;
+    for (String symbol : symbols) {
+      char[] folded = new char[symbol.length()];
+      for (int i = 0; i < folded.length; i++) {
+        folded[i] = Character.toUpperCase(symbol.charAt(i));
+      }
+      int slot = hash(symbol, 0, symbol.length()) & mask;
+      while (table[slot] != null && !equal(table[slot], symbol, 0, symbol.length())) {
+        slot = (slot + 1) & mask;
+      }
+      if (table[slot] == null) {
+        table[slot] = folded;
+        count++;
+      }
+    }
+    this.size = count;
+  }
+
+  /**
+   * Reads one symbol per line. Blank lines and lines starting with # are ignored.
+   *
+   * @param reader source of symbols. It is not closed.
+   * @return a dictionary containing the symbols read
+   */
+  public static CashtagDictionary read(Reader reader) throws IOException {
+    BufferedReader bufferedReader = new BufferedReader(reader);
+    List<String> symbols = new ArrayList<String>();
+    String line;
+    while ((line = bufferedReader.readLine()) != null) {
+      line = line.trim();
+      if (!line.isEmpty() && line.charAt(0) != '#') {
+        symbols.add(line);
+      }
+    }
+    return new CashtagDictionary(symbols);
+  }
+
+  public boolean contains(CharSequence symbol) {
+    return contains(symbol, 0, symbol.length());
+  }
+
+  /**
+   * @param text containing the candidate symbol
+   * @param start index of the first character of the symbol (after the $ sign)
+   * @param end index after the last character of the symbol
+   * @return true if the symbol is known
+   */
+  public boolean contains(CharSequence text, int start, int end) {
+    int slot = hash(text, start, end) & mask;
+    while (table[slot] != null) {
+      if (equal(table[slot], text, start, end)) {
+        return true;
+      }
+      slot = (slot + 1) & mask;
+    }
+    return false;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  private static int hash(CharSequence text, int start, int end) {
+    int hash = 0;
+    for (int i = start; i < end; i++) {
+      hash = 31 * hash + Character.toUpperCase(text.charAt(i));
+    }
+    return hash ^ (hash >>> 16);
+  }
+
+  private static boolean equal(char[] folded, CharSequence text, int start, int end) {
+    if (folded.length != end - start) {
+      return false;
+    }
+    for (int i = 0; i < folded.length; i++) {
+      if (folded[i] != Character.toUpperCase(text.charAt(start + i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+}
@@ -0,0 +1,143 @@
+package com.moandjiezana.tent.text;
+
+import com.moandjiezana.tent.text.Extractor.Entity;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Extracts entities from a very long text in parallel, by splitting it into chunks extracted on an executor.
+ * <p/>
+ * Texts are only split after a space, tab or line feed, which no entity contains, so no entity crosses a chunk
+ * boundary. Each chunk also starts with the separator ending the previous chunk, since the character before a URL is
+ * part of its match: without it, the first character of a chunk could be taken as that character instead of as part of
+ * a URL. The result is identical to that of {@link Extractor#extractEntitiesWithIndices(String)}. Texts without a
+ * separator for more than a chunk are split less often.
+ */
+public class ChunkedExtractor {
+  /** Default minimum length of a chunk */
+  public static final int DEFAULT_CHUNK_SIZE = 32 * 1024;
+
+  private final Extractor extractor;
+  private final ExecutorService executor;
+  private final int chunkSize;
+
+  /**
+   * Uses chunks of at least {@link #DEFAULT_CHUNK_SIZE}.
+   */
+  public ChunkedExtractor(Extractor extractor, ExecutorService executor) {
+    this(extractor, executor, DEFAULT_CHUNK_SIZE);
+  }
+
+  /**
+   * @param extractor shared by all chunks, so it must not be reconfigured during an extraction
+   * @param executor runs all chunks but the last, which runs on the calling thread
+   * @param chunkSize minimum length of a chunk. Texts up to this long are extracted on the calling thread.
+   */
+  public ChunkedExtractor(Extractor extractor, ExecutorService executor, int chunkSize) {
+    if (chunkSize < 1) {
+      throw new IllegalArgumentException("Chunk size must be positive");
+    }
+    this.extractor = extractor;
+    this.executor = executor;
+    this.chunkSize = chunkSize;
+  }
+
+  /**
+   * Extract URLs, @mentions, lists, #hashtags and $cashtags from a given text.
+   *
+   * @param text of the post
+   * @return list of extracted entities, as {@link Extractor#extractEntitiesWithIndices(String)} would return
+   */
+  public List<Entity> extractEntitiesWithIndices(String text) throws InterruptedException {
+    List<Integer> boundaries = findChunkBoundaries(text);
+    if (boundaries.size() <= 2) {
+      return extractor.extractEntitiesWithIndices(text);
+    }
+
+    List<Future<List<Entity>>> chunks = new ArrayList<Future<List<Entity>>>(boundaries.size() - 2);
+    try {
+      for (int i = 0; i < boundaries.size() - 2; i++) {
+        chunks.add(executor.submit(extractChunk(text, boundaries.get(i), boundaries.get(i + 1))));
+      }
+      List<Entity> last = extract(text, boundaries.get(boundaries.size() - 2), text.length());
+
+      List<Entity> entities = new ArrayList<Entity>();
+      for (Future<List<Entity>> chunk : chunks) {
+        entities.addAll(get(chunk));
+      }
+      entities.addAll(last);
+      return entities;
+    } finally {
+      for (Future<List<Entity>> chunk : chunks) {
+        chunk.cancel(true);
+      }
+    }
+  }
+
+  private static List<Entity> get(Future<List<Entity>> chunk) throws InterruptedException {
+    try {
+      return chunk.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) e.getCause();
+      } else if (e.getCause() instanceof Error) {
+        throw (Error) e.getCause();
+      }
+      throw new IllegalStateException(e.getCause());
+    }
+  }
+
+  /**
+   * @return the start of each chunk, then the end of the text
+   */
+  private List<Integer> findChunkBoundaries(String text) {
+    List<Integer> boundaries = new ArrayList<Integer>();
+    boundaries.add(0);
+    int boundary = 0;
+    while (text.length() - boundary > chunkSize) {
+      // Move each boundary forward to just after the next separator
+      int position = boundary + chunkSize;
+      while (position < text.length() && !isSeparator(text.charAt(position - 1))) {
+        position++;
+      }
+      if (position == text.length()) {
+        break;
+      }
+      boundary = position;
+      boundaries.add(boundary);
+    }
+    boundaries.add(text.length());
+    return boundaries;
+  }
+
+  private static boolean isSeparator(char c) {
+    return c == ' ' || c == '\n' || c == '\t';
+  }
+
+  private Callable<List<Entity>> extractChunk(final String text, final int start, final int end) {
+    return new Callable<List<Entity>>() {
+      @Override
+      public List<Entity> call() {
+        return extract(text, start, end);
+      }
+    };
+  }
+
+  private List<Entity> extract(String text, int start, int end) {
+    // Overlaps the previous chunk by its final separator, which no entity can start with
+    if (start > 0) {
+      start--;
+    }
+    List<Entity> entities = extractor.extractEntitiesWithIndices(text.substring(start, end));
+    for (Entity entity : entities) {
+      entity.start += start;
+      entity.end += start;
+    }
+    return entities;
+  }
+}
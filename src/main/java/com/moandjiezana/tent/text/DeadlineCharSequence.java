@@ -0,0 +1,66 @@
+package com.moandjiezana.tent.text;
+
+/**
+ * Text that stops regular expressions from running past a deadline. java.util.regex reads its input one character at a
+ * time through {@link #charAt(int)}, which periodically checks the time and throws {@link DeadlineExceededException}
+ * once the deadline has passed or the thread is interrupted, aborting the match however much it backtracks.
+ */
+final class DeadlineCharSequence implements CharSequence {
+
+  /**
+   * Thrown when the deadline passes while the text is being read. It has no stack trace, as it is always caught.
+   */
+  static final class DeadlineExceededException extends RuntimeException {
+    private static final long serialVersionUID = 1L;
+
+    DeadlineExceededException() {
+      super("Deadline exceeded");
+    }
+
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+      return this;
+    }
+  }
+
+  /** The time is checked once every this many characters read, as reading it costs much more than a character */
+  private static final int CHECK_INTERVAL_MASK = 0xff;
+
+  private final String text;
+  private final long deadline;
+  private int reads = 0;
+
+  /**
+   * @param deadline value of {@link System#nanoTime()} after which the text can't be read
+   */
+  DeadlineCharSequence(String text, long deadline) {
+    this.text = text;
+    this.deadline = deadline;
+  }
+
+  @Override
+  public char charAt(int index) {
+    if ((++reads & CHECK_INTERVAL_MASK) == 0 && (System.nanoTime() - deadline > 0 || Thread.currentThread().isInterrupted())) {
+      throw new DeadlineExceededException();
+    }
+    return text.charAt(index);
+  }
+
+  @Override
+  public int length() {
+    return text.length();
+  }
+
+  /**
+   * @return a plain subsequence, e.g. a group matched by a regular expression, which doesn't check the deadline
+   */
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return text.subSequence(start, end);
+  }
+
+  @Override
+  public String toString() {
+    return text;
+  }
+}
@@ -0,0 +1,349 @@
+package com.moandjiezana.tent.text;
+
+import com.moandjiezana.tent.text.Extractor.Entity;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A compact binary encoding of the entities extracted from a text, to be stored next to it.
+ * <p/>
+ * Values and list slugs aren't copied: they are stored as ranges of the text, which must therefore be provided to
+ * decode them. Only display and expanded URLs, which don't appear in the text, are stored as UTF-8.
+ * <p/>
+ * Entities to be auto-linked must be encoded with {@link Autolink#encodeEntities(String)}, not extracted and encoded
+ * directly: Autolink escapes brackets in the text before linking it, so the offsets must be those in the escaped text,
+ * and the entities must be extracted with the same settings as {@link Autolink#autoLink(String)} uses. Otherwise the
+ * HTML may contain unescaped markup from the text.
+ * <p/>
+ * Format: a version byte, the number of entities, then for each entity a header byte holding its type and which
+ * optional fields are present, followed by variable-length integers:
+ * <ul>
+ * <li>start, as the difference from the end of the previous entity (zigzag-encoded, so entities needn't be sorted)</li>
+ * <li>length</li>
+ * <li>offset of the value from the start, and length of the value</li>
+ * <li>if present, offset of the list slug from the end of the value, and its length</li>
+ * <li>if present, display URL and expanded URL, each as a length followed by UTF-8 bytes</li>
+ * </ul>
+ * Most entities take 5 bytes.
+ */
+public final class EntityCodec {
+  static final int VERSION = 1;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final Entity.Type[] TYPES = Entity.Type.values();
+
+  private static final int TYPE_MASK = 0x07;
+  private static final int HAS_LIST_SLUG = 0x08;
+  private static final int HAS_DISPLAY_URL = 0x10;
+  private static final int HAS_EXPANDED_URL = 0x20;
+
+  // A header byte and four variable-length integers
+  private static final int MIN_ENTITY_SIZE = 5;
+
+  /**
+   * Reads encoded entities one at a time, without creating an object per entity. Each field of the current entity is
+   * available after {@link #next()} returns true.
+   */
+  public static final class Cursor {
+    private final byte[] bytes;
+    private final int limit;
+    private int position;
+    private int remaining;
+
+    private Entity.Type type;
+    private int start;
+    private int end;
+    private int valueStart;
+    private int valueEnd;
+    private int listSlugStart;
+    private int listSlugEnd;
+    private int displayURLOffset;
+    private int displayURLLength;
+    private int expandedURLOffset;
+    private int expandedURLLength;
+
+    Cursor(byte[] bytes, int offset, int length) {
+      this.bytes = bytes;
+      this.position = offset;
+      this.limit = offset + length;
+      if (length == 0 || bytes[position++] != VERSION) {
+        throw new IllegalArgumentException("Not encoded entities, or encoded by an unsupported version");
+      }
+      this.remaining = readVarint();
+      if (remaining > (limit - position) / MIN_ENTITY_SIZE) {
+        throw new IllegalArgumentException("Truncated entities: " + remaining + " entities in " + (limit - position)
+            + " bytes");
+      }
+    }
+
+    /**
+     * @return the number of entities not read yet
+     */
+    public int remaining() {
+      return remaining;
+    }
+
+    /**
+     * Moves to the next entity.
+     *
+     * @return false if there are no more entities
+     */
+    public boolean next() {
+      if (remaining == 0) {
+        return false;
+      }
+      remaining--;
+
+      int header = readByte();
+      if ((header & TYPE_MASK) >= TYPES.length) {
+        throw new IllegalArgumentException("Unknown entity type " + (header & TYPE_MASK));
+      }
+      type = TYPES[header & TYPE_MASK];
+      int delta = readVarint();
+      start = end + ((delta >>> 1) ^ -(delta & 1));
+      end = start + readVarint();
+      valueStart = start + readVarint();
+      valueEnd = valueStart + readVarint();
+
+      if ((header & HAS_LIST_SLUG) != 0) {
+        listSlugStart = valueEnd + readVarint();
+        listSlugEnd = listSlugStart + readVarint();
+      } else {
+        listSlugStart = -1;
+        listSlugEnd = -1;
+      }
+      displayURLOffset = -1;
+      if ((header & HAS_DISPLAY_URL) != 0) {
+        displayURLLength = readVarint();
+        displayURLOffset = skip(displayURLLength);
+      }
+      expandedURLOffset = -1;
+      if ((header & HAS_EXPANDED_URL) != 0) {
+        expandedURLLength = readVarint();
+        expandedURLOffset = skip(expandedURLLength);
+      }
+      return true;
+    }
+
+    public Entity.Type getType() {
+      return type;
+    }
+
+    public int getStart() {
+      return start;
+    }
+
+    public int getEnd() {
+      return end;
+    }
+
+    public int getValueStart() {
+      return valueStart;
+    }
+
+    public int getValueEnd() {
+      return valueEnd;
+    }
+
+    /**
+     * @return start of the list slug in the text, or -1 if the entity has none
+     */
+    public int getListSlugStart() {
+      return listSlugStart;
+    }
+
+    /**
+     * @return end of the list slug in the text, or -1 if the entity has none
+     */
+    public int getListSlugEnd() {
+      return listSlugEnd;
+    }
+
+    /**
+     * @return the display URL, decoded on each call, or null if the entity has none
+     */
+    public String getDisplayURL() {
+      return displayURLOffset == -1 ? null : new String(bytes, displayURLOffset, displayURLLength, UTF_8);
+    }
+
+    /**
+     * @return the expanded URL, decoded on each call, or null if the entity has none
+     */
+    public String getExpandedURL() {
+      return expandedURLOffset == -1 ? null : new String(bytes, expandedURLOffset, expandedURLLength, UTF_8);
+    }
+
+    /**
+     * @param text the entities were extracted from
+     * @return the current entity
+     */
+    public Entity toEntity(String text) {
+      if (!fits(text.length())) {
+        throw new IllegalArgumentException("Entity " + start + "-" + end + " is outside of the text");
+      }
+      String listSlug = listSlugStart == -1 ? null : text.substring(listSlugStart, listSlugEnd);
+      Entity entity = new Entity(start, end, text.substring(valueStart, valueEnd), listSlug, type);
+      entity.displayURL = getDisplayURL();
+      entity.expandedURL = getExpandedURL();
+      return entity;
+    }
+
+    /**
+     * @return true if the value and list slug of the current entity are in order within it, and it is within a text of
+     *         the given length
+     */
+    boolean fits(int textLength) {
+      boolean fits = 0 <= start && start <= valueStart && valueStart <= valueEnd && valueEnd <= end && end <= textLength;
+      if (listSlugStart != -1) {
+        fits = fits && valueEnd <= listSlugStart && listSlugStart <= listSlugEnd && listSlugEnd <= end;
+      }
+      return fits;
+    }
+
+    private int readByte() {
+      if (position >= limit) {
+        throw new IllegalArgumentException("Truncated entities");
+      }
+      return bytes[position++] & 0xff;
+    }
+
+    private int readVarint() {
+      int value = 0;
+      for (int shift = 0; shift < 35; shift += 7) {
+        int b = readByte();
+        if (shift == 28 && (b & 0x78) != 0) {
+          // Only 3 more bits fit in a non-negative int
+          throw new IllegalArgumentException("Malformed variable-length integer");
+        }
+        value |= (b & 0x7f) << shift;
+        if (b < 0x80) {
+          return value;
+        }
+      }
+      throw new IllegalArgumentException("Malformed variable-length integer");
+    }
+
+    private int skip(int length) {
+      int offset = position;
+      if (length < 0 || length > limit - position) {
+        throw new IllegalArgumentException("Truncated entities");
+      }
+      position += length;
+      return offset;
+    }
+  }
+
+  public static byte[] encode(String text, List<Entity> entities) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(entities.size() * 6 + 2);
+    try {
+      encode(text, entities, out);
+    } catch (IOException e) {
+      throw new IllegalStateException(e);
+    }
+    return out.toByteArray();
+  }
+
+  /**
+   * @param text the entities were extracted from
+   * @param entities with indices into the text, as returned by {@link Extractor}
+   * @param out receives the encoded entities. It is not closed.
+   * @throws IllegalArgumentException if a value or list slug isn't found in the text within its entity
+   */
+  public static void encode(String text, List<Entity> entities, OutputStream out) throws IOException {
+    out.write(VERSION);
+    writeVarint(out, entities.size());
+    int previousEnd = 0;
+    for (Entity entity : entities) {
+      int valueStart = find(text, entity.value, entity.start, entity.end);
+      int valueEnd = valueStart + entity.value.length();
+      int listSlugStart = entity.listSlug == null ? -1 : find(text, entity.listSlug, valueEnd, entity.end);
+
+      int header = entity.type.ordinal();
+      header |= entity.listSlug == null ? 0 : HAS_LIST_SLUG;
+      header |= entity.displayURL == null ? 0 : HAS_DISPLAY_URL;
+      header |= entity.expandedURL == null ? 0 : HAS_EXPANDED_URL;
+      out.write(header);
+      int delta = entity.start - previousEnd;
+      writeVarint(out, (delta << 1) ^ (delta >> 31));
+      writeVarint(out, entity.end - entity.start);
+      writeVarint(out, valueStart - entity.start);
+      writeVarint(out, entity.value.length());
+      if (entity.listSlug != null) {
+        writeVarint(out, listSlugStart - valueEnd);
+        writeVarint(out, entity.listSlug.length());
+      }
+      if (entity.displayURL != null) {
+        writeString(out, entity.displayURL);
+      }
+      if (entity.expandedURL != null) {
+        writeString(out, entity.expandedURL);
+      }
+      previousEnd = entity.end;
+    }
+  }
+
+  public static Cursor cursor(byte[] encoded) {
+    return new Cursor(encoded, 0, encoded.length);
+  }
+
+  /**
+   * @param encoded bytes containing encoded entities
+   * @param offset of the first byte of the encoded entities
+   * @param length of the encoded entities
+   */
+  public static Cursor cursor(byte[] encoded, int offset, int length) {
+    if (offset < 0 || length < 0 || length > encoded.length - offset) {
+      throw new IllegalArgumentException("Range " + offset + "+" + length + " is outside of " + encoded.length
+          + " bytes");
+    }
+    return new Cursor(encoded, offset, length);
+  }
+
+  /**
+   * @param text the entities were extracted from
+   * @param encoded entities
+   * @return the entities
+   */
+  public static List<Entity> decode(String text, byte[] encoded) {
+    Cursor cursor = cursor(encoded);
+    List<Entity> entities = new ArrayList<Entity>(cursor.remaining());
+    while (cursor.next()) {
+      entities.add(cursor.toEntity(text));
+    }
+    return entities;
+  }
+
+  private static int find(String text, String part, int start, int end) {
+    if (start >= 0 && end <= text.length()) {
+      // Values are at the start of entities, or right after their symbol
+      for (int i = start; i <= end - part.length(); i++) {
+        if (text.startsWith(part, i)) {
+          return i;
+        }
+      }
+    }
+    throw new IllegalArgumentException("\"" + part + "\" isn't in the text between " + start + " and " + end);
+  }
+
+  private static void writeVarint(OutputStream out, int value) throws IOException {
+    while ((value & ~0x7f) != 0) {
+      out.write((value & 0x7f) | 0x80);
+      value >>>= 7;
+    }
+    out.write(value);
+  }
+
+  private static void writeString(OutputStream out, String value) throws IOException {
+    byte[] bytes = value.getBytes(UTF_8);
+    writeVarint(out, bytes.length);
+    out.write(bytes);
+  }
+
+  private EntityCodec() {
+  }
+}
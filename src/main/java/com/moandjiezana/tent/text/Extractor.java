@@ -3,9 +3,8 @@ package com.moandjiezana.tent.text;
 
 import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Comparator;
-import java.util.Iterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Matcher;
 
 /**
@@ -116,7 +115,35 @@ public class Extractor {
     }
   }
 
+  /**
+   * Entities extracted within a time limit.
+   */
+  public static class BoundedExtraction {
+    private final List<Entity> entities;
+    private final boolean complete;
+
+    BoundedExtraction(List<Entity> entities, boolean complete) {
+      this.entities = entities;
+      this.complete = complete;
+    }
+
+    public List<Entity> getEntities() {
+      return entities;
+    }
+
+    /**
+     * @return false if extraction was aborted, so some URLs may be missing
+     */
+    public boolean isComplete() {
+      return complete;
+    }
+  }
+
   private boolean extractURLWithoutProtocol = true;
+  private CashtagDictionary cashtagDictionary = null;
+  private Metrics metrics = null;
+  private SlowCall.Listener slowCallListener = null;
+  private long slowCallThresholdNanos;
 
   /**
    * Create a new extractor.
@@ -124,30 +151,50 @@ public class Extractor {
   public Extractor() {
   }
 
-  private void removeOverlappingEntities(List<Entity> entities) {
-    // sort by index
-    Collections.<Entity>sort(entities, new Comparator<Entity>() {
-      public int compare(Entity e1, Entity e2) {
-        return e1.start - e2.start;
-      }
-    });
-
-    // Remove overlapping entities.
-    // Two entities overlap only when one is URL and the other is hashtag/mention
-    // which is a part of the URL. When it happens, we choose URL over hashtag/mention
-    // by selecting the one with smaller start index.
-    if (!entities.isEmpty()) {
-      Iterator<Entity> it = entities.iterator();
-      Entity prev = it.next();
-      while (it.hasNext()) {
-        Entity cur = it.next();
-        if (prev.getEnd() > cur.getStart()) {
-          it.remove();
-        } else {
-          prev = cur;
+  /**
+   * Merges lists of entities, each in ascending order by start index, into a single list in ascending order, without
+   * overlapping entities. This is done in a single pass over the entities.
+   *
+   * Two entities overlap only when one is URL and the other is hashtag/mention
+   * which is a part of the URL. When it happens, we choose URL over hashtag/mention
+   * by selecting the one with smaller start index. When two entities have the same start index,
+   * the one from the earliest list is kept.
+   *
+   * @param entityLists lists of entities, each sorted by start index
+   * @return a new list of non-overlapping entities, sorted by start index
+   */
+  private static List<Entity> mergeNonOverlappingEntities(List<List<Entity>> entityLists) {
+    int listCount = entityLists.size();
+    int[] positions = new int[listCount];
+    int total = 0;
+    for (List<Entity> entities : entityLists) {
+      total += entities.size();
+    }
+
+    List<Entity> merged = new ArrayList<Entity>(total);
+    int end = 0;
+    for (int remaining = total; remaining > 0; remaining--) {
+      int next = -1;
+      Entity nextEntity = null;
+      for (int i = 0; i < listCount; i++) {
+        List<Entity> entities = entityLists.get(i);
+        if (positions[i] < entities.size()) {
+          Entity candidate = entities.get(positions[i]);
+          if (nextEntity == null || candidate.start < nextEntity.start) {
+            next = i;
+            nextEntity = candidate;
+          }
         }
       }
+      positions[next]++;
+
+      if (merged.isEmpty() || end <= nextEntity.start) {
+        merged.add(nextEntity);
+        end = nextEntity.end;
+      }
     }
+
+    return merged;
   }
 
   /**
@@ -156,14 +203,51 @@ public class Extractor {
    * @return list of extracted entities
    */
   public List<Entity> extractEntitiesWithIndices(String text) {
-    List<Entity> entities = new ArrayList<Entity>();
-    entities.addAll(extractURLsWithIndices(text));
-    entities.addAll(extractHashtagsWithIndices(text, false));
-    entities.addAll(extractMentionsOrListsWithIndices(text));
-    entities.addAll(extractCashtagsWithIndices(text));
+    List<List<Entity>> entities = new ArrayList<List<Entity>>(4);
+    entities.add(extractURLsWithIndices(text));
+    entities.add(extractHashtagsWithIndices(text, false));
+    entities.add(extractMentionsOrListsWithIndices(text));
+    entities.add(extractCashtagsWithIndices(text));
 
-    removeOverlappingEntities(entities);
-    return entities;
+    return mergeNonOverlappingEntities(entities);
+  }
+
+  /**
+   * Extract URLs, @mentions, lists, #hashtags and $cashtags from a given text/tweet, giving up on URLs if the timeout
+   * elapses or the thread is interrupted. Matching URLs can backtrack heavily on some inputs, whereas the other
+   * entities are always extracted in a single pass.
+   * <p/>
+   * When scanning is aborted, or overflows the stack, the URLs found until then are kept. Mentions and hashtags that
+   * are part of a URL that wasn't found are then extracted as well.
+   *
+   * @param text text of tweet
+   * @param timeout maximum time spent extracting URLs
+   * @return extracted entities, and whether all URLs were extracted
+   */
+  public BoundedExtraction extractEntitiesWithIndices(String text, long timeout, TimeUnit unit) {
+    if (text == null || text.isEmpty()) {
+      return new BoundedExtraction(Collections.<Entity>emptyList(), true);
+    }
+
+    DeadlineCharSequence scanned = new DeadlineCharSequence(text, System.nanoTime() + unit.toNanos(timeout));
+    List<Entity> urls = new ArrayList<Entity>();
+    boolean complete = true;
+    try {
+      urls = extractURLsWithIndices(text, scanned, urls);
+    } catch (DeadlineCharSequence.DeadlineExceededException e) {
+      complete = false;
+    } catch (StackOverflowError e) {
+      // java.util.regex recurses for each repetition, so very long URL-like runs can exhaust the stack
+      complete = false;
+    }
+
+    List<List<Entity>> entities = new ArrayList<List<Entity>>(4);
+    entities.add(urls);
+    entities.add(extractHashtagsWithIndices(text, false));
+    entities.add(extractMentionsOrListsWithIndices(text));
+    entities.add(extractCashtagsWithIndices(text));
+
+    return new BoundedExtraction(mergeNonOverlappingEntities(entities), complete);
   }
 
   /**
@@ -205,39 +289,116 @@ public class Extractor {
       return Collections.emptyList();
     }
 
+    long start = isMeasured() ? System.nanoTime() : 0;
     // Performance optimization.
-    // If text doesn't contain @/＠ at all, the text doesn't
-    // contain @mention. So we can simply return an empty list.
-    boolean found = false;
-    for (char c : text.toCharArray()) {
-      if (c == '^') {
-        found = true;
-        break;
-      }
-    }
-    if (!found) {
-      return Collections.emptyList();
+    // If text doesn't contain ^ at all, the text doesn't
+    // contain ^mention. So we can simply return an empty list.
+    int at = text.indexOf('^');
+    List<Entity> extracted = at == -1 ? Collections.<Entity>emptyList() : scanMentionsOrLists(text, at);
+
+    if (isMeasured()) {
+      measured(Entity.Type.MENTION, at == -1, text, extracted.size(), System.nanoTime() - start);
     }
+    return extracted;
+  }
 
+  /**
+   * @param at index of the first ^ in text
+   */
+  private static List<Entity> scanMentionsOrLists(String text, int at) {
+    // Hand-coded equivalent of Regex.VALID_MENTION_OR_LIST followed by Regex.INVALID_MENTION_MATCH_END.
+    // Jumps from one ^ to the next instead of attempting a match at every position.
     List<Entity> extracted = new ArrayList<Entity>();
-    Matcher matcher = Regex.VALID_MENTION_OR_LIST.matcher(text);
-    while (matcher.find()) {
-      String after = text.substring(matcher.end());
-      if (! Regex.INVALID_MENTION_MATCH_END.matcher(after).find()) {
-        if (matcher.group(Regex.VALID_MENTION_OR_LIST_GROUP_LIST) == null) {
-          extracted.add(new Entity(matcher, Entity.Type.MENTION, Regex.VALID_MENTION_OR_LIST_GROUP_USERNAME));
+    int length = text.length();
+    // End of the last match, accepted or not. Like Matcher.find(), the next match can't reuse those characters.
+    int matchEnd = 0;
+
+    while (at != -1) {
+      int usernameStart = at;
+      while (usernameStart < length && text.charAt(usernameStart) == '^') {
+        usernameStart++;
+      }
+
+      if (!isValidMentionPrefix(text, at, matchEnd)) {
+        at = text.indexOf('^', usernameStart);
+        continue;
+      }
+
+      int usernameEnd = usernameStart;
+      while (usernameEnd < length && usernameEnd - usernameStart < 20 && isMentionChar(text.charAt(usernameEnd))) {
+        usernameEnd++;
+      }
+      if (usernameEnd == usernameStart) {
+        at = text.indexOf('^', usernameStart);
+        continue;
+      }
+
+      int end = usernameEnd;
+      if (end + 1 < length && text.charAt(end) == '/' && isAsciiLetter(text.charAt(end + 1))) {
+        end += 2;
+        while (end < length && end - usernameEnd < 26 && (isMentionChar(text.charAt(end)) || text.charAt(end) == '-')) {
+          end++;
+        }
+      }
+      matchEnd = end;
+
+      if (!isInvalidMentionEnd(text, end)) {
+        String username = text.substring(usernameStart, usernameEnd);
+        if (end == usernameEnd) {
+          extracted.add(new Entity(usernameStart - 1, end, username, Entity.Type.MENTION));
         } else {
-          extracted.add(new Entity(matcher.start(Regex.VALID_MENTION_OR_LIST_GROUP_USERNAME) - 1,
-              matcher.end(Regex.VALID_MENTION_OR_LIST_GROUP_LIST),
-              matcher.group(Regex.VALID_MENTION_OR_LIST_GROUP_USERNAME),
-              matcher.group(Regex.VALID_MENTION_OR_LIST_GROUP_LIST),
-              Entity.Type.MENTION));
+          extracted.add(new Entity(usernameStart - 1, end, username, text.substring(usernameEnd, end), Entity.Type.MENTION));
         }
       }
+
+      at = text.indexOf('^', end);
     }
+
     return extracted;
   }
 
+  /**
+   * @param at index of the first ^ in a run
+   * @param from index before which characters have already been consumed by a previous match
+   * @return true if the run of ^ is preceded by the start of the text, RT, RT: or a character not in [a-z0-9_!#$%&*]
+   */
+  private static boolean isValidMentionPrefix(String text, int at, int from) {
+    if (at == 0) {
+      return true;
+    }
+    if (at - 1 < from) {
+      return false;
+    }
+
+    char before = text.charAt(at - 1);
+    if (!isMentionChar(before) && "!#$%&*".indexOf(before) == -1) {
+      return true;
+    }
+
+    // RT: is already covered above, as : is a valid preceding character
+    return at - 2 >= from && text.regionMatches(true, at - 2, "RT", 0, 2);
+  }
+
+  /**
+   * @return true if a mention ending at end is followed by ^, a Latin accent or ://
+   */
+  private static boolean isInvalidMentionEnd(String text, int end) {
+    if (end == text.length()) {
+      return false;
+    }
+
+    char c = text.charAt(end);
+    return c == '^' || CharacterClasses.isLatinAccent(c) || text.startsWith("://", end);
+  }
+
+  private static boolean isMentionChar(char c) {
+    return isAsciiLetter(c) || (c >= '0' && c <= '9') || c == '_';
+  }
+
+  private static boolean isAsciiLetter(char c) {
+    return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z');
+  }
+
   /**
    * Extract a @username reference from the beginning of Tweet text. A reply is an occurrence of @username at the
    * beginning of a Tweet, preceded by 0 or more spaces.
@@ -250,10 +411,10 @@ public class Extractor {
       return null;
     }
 
-    Matcher matcher = Regex.VALID_REPLY.matcher(text);
+    Matcher matcher = Regex.Mentions.VALID_REPLY.matcher(text);
     if (matcher.find()) {
       String after = text.substring(matcher.end());
-      if (Regex.INVALID_MENTION_MATCH_END.matcher(after).find()) {
+      if (Regex.Mentions.INVALID_MENTION_MATCH_END.matcher(after).find()) {
         return null;
       } else {
         return matcher.group(Regex.VALID_REPLY_GROUP_USERNAME);
@@ -288,23 +449,53 @@ public class Extractor {
    * @return List of URLs referenced.
    */
   public List<Entity> extractURLsWithIndices(String text) {
-    if (text == null || text.isEmpty()
-        || (extractURLWithoutProtocol ? text.indexOf('.') : text.indexOf(':')) == -1) {
-      // Performance optimization.
-      // If text doesn't contain '.' or ':' at all, text doesn't contain URL,
-      // so we can simply return an empty list.
+    return extractURLsWithIndices(text, text, null);
+  }
+
+  /**
+   * @param scanned the text, possibly wrapped to abort scanning
+   * @param urls receives URLs as they are found, so those found before scanning is aborted are kept, or null to create
+   *          a list only if the text can contain URLs
+   * @return urls, or an empty list if the text can't contain URLs
+   */
+  private List<Entity> extractURLsWithIndices(String text, CharSequence scanned, List<Entity> urls) {
+    if (text == null || text.isEmpty()) {
       return Collections.emptyList();
     }
 
-    List<Entity> urls = new ArrayList<Entity>();
+    long start = isMeasured() ? System.nanoTime() : 0;
+    // Performance optimization.
+    // If text doesn't contain '.' or ':' at all, text doesn't contain URL,
+    // so we can simply return an empty list.
+    boolean prefiltered = (extractURLWithoutProtocol ? text.indexOf('.') : text.indexOf(':')) == -1;
+    if (prefiltered) {
+      if (isMeasured()) {
+        measured(Entity.Type.URL, true, text, 0, System.nanoTime() - start);
+      }
+      return Collections.emptyList();
+    }
 
-    Matcher matcher = Regex.VALID_URL.matcher(text);
+    if (urls == null) {
+      urls = new ArrayList<Entity>();
+    }
+    try {
+      scanURLs(scanned, urls);
+    } finally {
+      if (isMeasured()) {
+        measured(Entity.Type.URL, false, text, urls.size(), System.nanoTime() - start);
+      }
+    }
+    return urls;
+  }
+
+  private void scanURLs(CharSequence text, List<Entity> urls) {
+    Matcher matcher = Regex.Urls.VALID_URL.matcher(text);
     while (matcher.find()) {
       if (matcher.group(Regex.VALID_URL_GROUP_PROTOCOL) == null) {
         // skip if protocol is not present and 'extractURLWithoutProtocol' is false
         // or URL is preceded by invalid character.
         if (!extractURLWithoutProtocol
-            || Regex.INVALID_URL_WITHOUT_PROTOCOL_MATCH_BEGIN
+            || Regex.Urls.INVALID_URL_WITHOUT_PROTOCOL_MATCH_BEGIN
                     .matcher(matcher.group(Regex.VALID_URL_GROUP_BEFORE)).matches()) {
           continue;
         }
@@ -312,7 +503,7 @@ public class Extractor {
       String url = matcher.group(Regex.VALID_URL_GROUP_URL);
       int start = matcher.start(Regex.VALID_URL_GROUP_URL);
       int end = matcher.end(Regex.VALID_URL_GROUP_URL);
-      Matcher tco_matcher = Regex.VALID_TCO_URL.matcher(url);
+      Matcher tco_matcher = Regex.Urls.VALID_TCO_URL.matcher(url);
       if (tco_matcher.find()) {
         // In the case of t.co URLs, don't allow additional path characters.
         url = tco_matcher.group();
@@ -321,8 +512,6 @@ public class Extractor {
 
       urls.add(new Entity(start, end, url, Entity.Type.URL));
     }
-
-    return urls;
   }
 
 
@@ -359,59 +548,156 @@ public class Extractor {
    * Extract #hashtag references from Tweet text.
    *
    * @param text of the tweet from which to extract hashtags
-   * @param checkUrlOverlap if true, check if extracted hashtags overlap URLs and remove overlapping ones
+   * @param checkUrlOverlap if true, check if extracted hashtags overlap URLs and remove overlapping ones.
+   *                        Pass false when the text is known not to contain URLs.
+   * @return List of hashtags referenced (without the leading # sign)
+   */
+  public List<Entity> extractHashtagsWithIndices(String text, boolean checkUrlOverlap) {
+    return extractHashtagsWithIndices(text, checkUrlOverlap, null);
+  }
+
+  /**
+   * Extract #hashtag references from Tweet text, removing those that overlap URLs that have already been extracted.
+   * This avoids extracting URLs a second time.
+   *
+   * @param text of the tweet from which to extract hashtags
+   * @param urls URLs extracted from the same text by {@link #extractURLsWithIndices(String)}, in ascending order
    * @return List of hashtags referenced (without the leading # sign)
    */
-  private List<Entity> extractHashtagsWithIndices(String text, boolean checkUrlOverlap) {
+  public List<Entity> extractHashtagsWithIndices(String text, List<Entity> urls) {
+    return extractHashtagsWithIndices(text, true, urls);
+  }
+
+  /**
+   * @param urls already extracted URLs, or null to extract them if needed
+   */
+  private List<Entity> extractHashtagsWithIndices(String text, boolean checkUrlOverlap, List<Entity> urls) {
     if (text == null || text.isEmpty()) {
       return Collections.emptyList();
     }
 
+    long start = isMeasured() ? System.nanoTime() : 0;
     // Performance optimization.
     // If text doesn't contain #/＃ at all, text doesn't contain
     // hashtag, so we can simply return an empty list.
-    boolean found = false;
-    for (char c : text.toCharArray()) {
-      if (c == '#' || c == '＃') {
-        found = true;
-        break;
+    int hash = indexOfHash(text, 0);
+    List<Entity> extracted = hash == -1 ? Collections.<Entity>emptyList() : scanHashtags(text, hash);
+
+    if (checkUrlOverlap && !extracted.isEmpty()) {
+      if (urls == null) {
+        // URL extraction is measured on its own, so its time is left out of the hashtag measurement
+        long urlStart = isMeasured() ? System.nanoTime() : 0;
+        urls = extractURLsWithIndices(text);
+        start += isMeasured() ? System.nanoTime() - urlStart : 0;
       }
+      extracted = removeHashtagsInsideURLs(extracted, urls);
     }
-    if (!found) {
-      return Collections.emptyList();
+
+    if (isMeasured()) {
+      measured(Entity.Type.HASHTAG, hash == -1, text, extracted.size(), System.nanoTime() - start);
     }
+    return extracted;
+  }
 
+  /**
+   * @param hash index of the first #/＃ in text
+   */
+  private static List<Entity> scanHashtags(String text, int hash) {
+    // Hand-coded equivalent of Regex.VALID_HASHTAG followed by Regex.INVALID_HASHTAG_MATCH_END.
     List<Entity> extracted = new ArrayList<Entity>();
-    Matcher matcher = Regex.VALID_HASHTAG.matcher(text);
+    int length = text.length();
+    // End of the last match, accepted or not. Like Matcher.find(), the next match can't reuse those characters.
+    int matchEnd = 0;
+
+    while (hash != -1) {
+      int start = hash + 1;
+      int end = start;
+      boolean hasAlpha = false;
+      if (hash == 0 || (hash - 1 >= matchEnd && !isHashtagBoundary(text.charAt(hash - 1)))) {
+        while (end < length && CharacterClasses.isHashtagAlphaNumeric(text.charAt(end))) {
+          hasAlpha = hasAlpha || CharacterClasses.isHashtagAlpha(text.charAt(end));
+          end++;
+        }
+      }
 
-    while (matcher.find()) {
-      String after = text.substring(matcher.end());
-      if (!Regex.INVALID_HASHTAG_MATCH_END.matcher(after).find()) {
-        extracted.add(new Entity(matcher, Entity.Type.HASHTAG, Regex.VALID_HASHTAG_GROUP_TAG));
+      if (!hasAlpha) {
+        hash = indexOfHash(text, start);
+        continue;
       }
-    }
 
-    if (checkUrlOverlap) {
-      // extract URLs
-      List<Entity> urls = extractURLsWithIndices(text);
-      if (!urls.isEmpty()) {
-        extracted.addAll(urls);
-        // remove overlap
-        removeOverlappingEntities(extracted);
-        // remove URL entities
-        Iterator<Entity> it = extracted.iterator();
-        while (it.hasNext()) {
-          Entity entity = it.next();
-          if (entity.getType() != Entity.Type.HASHTAG) {
-            it.remove();
-          }
-        }
+      matchEnd = end;
+      if (end == length || !(text.charAt(end) == '#' || text.charAt(end) == '＃' || text.startsWith("://", end))) {
+        extracted.add(new Entity(hash, end, text.substring(start, end), Entity.Type.HASHTAG));
       }
+      hash = indexOfHash(text, end);
     }
 
     return extracted;
   }
 
+  private static int indexOfHash(String text, int fromIndex) {
+    for (int i = fromIndex; i < text.length(); i++) {
+      char c = text.charAt(i);
+      if (c == '#' || c == '＃') {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * @return true if c can't precede a hashtag
+   */
+  private static boolean isHashtagBoundary(char c) {
+    return c == '&' || CharacterClasses.isHashtagAlphaNumeric(c);
+  }
+
+  /**
+   * Gives the same result as merging hashtags and URLs with {@link #mergeNonOverlappingEntities(List)} and dropping the
+   * URLs, but finds each hashtag's URL by binary search.
+   */
+  private static List<Entity> removeHashtagsInsideURLs(List<Entity> hashtags, List<Entity> urls) {
+    if (hashtags.isEmpty() || urls.isEmpty()) {
+      return hashtags;
+    }
+
+    List<Entity> kept = new ArrayList<Entity>(hashtags.size());
+    // A URL that starts inside a kept hashtag is itself dropped, so it doesn't hide the hashtags after it.
+    int droppedUrl = -1;
+    for (Entity hashtag : hashtags) {
+      int url = lastStartingBefore(urls, hashtag.start);
+      if (url != -1 && url != droppedUrl && urls.get(url).end > hashtag.start) {
+        continue;
+      }
+
+      kept.add(hashtag);
+      int overlapped = lastStartingBefore(urls, hashtag.end);
+      if (overlapped > url) {
+        droppedUrl = overlapped;
+      }
+    }
+
+    return kept;
+  }
+
+  /**
+   * @param entities in ascending order by start index
+   * @return the position of the last entity starting before index, or -1 if there is none
+   */
+  private static int lastStartingBefore(List<Entity> entities, int index) {
+    int low = 0;
+    int high = entities.size() - 1;
+    while (low <= high) {
+      int middle = (low + high) >>> 1;
+      if (entities.get(middle).start < index) {
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return high;
+  }
+
   /**
    * Extract $cashtag references from Tweet text.
    *
@@ -442,24 +728,124 @@ public class Extractor {
       return Collections.emptyList();
     }
 
+    long start = isMeasured() ? System.nanoTime() : 0;
     // Performance optimization.
     // If text doesn't contain $, text doesn't contain
     // cashtag, so we can simply return an empty list.
-    if (text.indexOf('$') == -1) {
-      return Collections.emptyList();
+    int dollar = text.indexOf('$');
+    List<Entity> extracted = dollar == -1 ? Collections.<Entity>emptyList() : scanCashtags(text, dollar);
 
+    if (isMeasured()) {
+      measured(Entity.Type.CASHTAG, dollar == -1, text, extracted.size(), System.nanoTime() - start);
     }
+    return extracted;
+  }
 
+  /**
+   * @param dollar index of the first $ in text
+   */
+  private List<Entity> scanCashtags(String text, int dollar) {
+    // Hand-coded equivalent of Regex.VALID_CASHTAG.
     List<Entity> extracted = new ArrayList<Entity>();
-    Matcher matcher = Regex.VALID_CASHTAG.matcher(text);
+    int length = text.length();
+
+    while (dollar != -1) {
+      int start = dollar + 1;
+      int end = start;
+      if (dollar == 0 || CharacterClasses.isUnicodeSpace(text.charAt(dollar - 1))) {
+        while (end < length && isAsciiLetter(text.charAt(end))) {
+          end++;
+        }
+      }
 
-    while (matcher.find()) {
-      extracted.add(new Entity(matcher, Entity.Type.CASHTAG, Regex.VALID_CASHTAG_GROUP_CASHTAG));
+      if (end > start && end - start <= 6) {
+        if (end < length && (text.charAt(end) == '.' || text.charAt(end) == '_')) {
+          int suffixEnd = end + 1;
+          while (suffixEnd < length && suffixEnd - end <= 2 && isAsciiLetter(text.charAt(suffixEnd))) {
+            suffixEnd++;
+          }
+          if (suffixEnd > end + 1 && isCashtagEnd(text, suffixEnd)) {
+            end = suffixEnd;
+          }
+        }
+
+        if (isCashtagEnd(text, end) && (cashtagDictionary == null || cashtagDictionary.contains(text, start, end))) {
+          extracted.add(new Entity(dollar, end, text.substring(start, end), Entity.Type.CASHTAG));
+        }
+      }
+
+      dollar = text.indexOf('$', start);
     }
 
     return extracted;
   }
 
+  /**
+   * @return true if a cashtag ending at end is followed by the end of the text, whitespace or punctuation
+   */
+  private static boolean isCashtagEnd(String text, int end) {
+    if (end == text.length()) {
+      return true;
+    }
+
+    char c = text.charAt(end);
+    if (end == text.length() - 1 && (c == '\u0085' || c == '\u2028' || c == '\u2029')) {
+      // Like $ in a regex, a final line terminator counts as the end of the text
+      return true;
+    }
+    // \s or \p{Punct}
+    return c == ' ' || (c >= '\t' && c <= '\r') || (c > ' ' && c < 0x7f && !isAsciiLetter(c) && !(c >= '0' && c <= '9'));
+  }
+
+  /**
+   * Restrict extracted $cashtags to known symbols.
+   *
+   * @param cashtagDictionary known symbols, or null to extract any well-formed cashtag (the default)
+   */
+  public void setCashtagDictionary(CashtagDictionary cashtagDictionary) {
+    this.cashtagDictionary = cashtagDictionary;
+  }
+
+  public CashtagDictionary getCashtagDictionary() {
+    return cashtagDictionary;
+  }
+
+  /**
+   * Record measurements of each extraction.
+   *
+   * @param metrics receiver of measurements, or null to record none (the default)
+   */
+  public void setMetrics(Metrics metrics) {
+    this.metrics = metrics;
+  }
+
+  public Metrics getMetrics() {
+    return metrics;
+  }
+
+  /**
+   * Report each extraction that takes at least the given time.
+   *
+   * @param listener receiver of slow calls, or null to report none (the default)
+   */
+  public void setSlowCallListener(SlowCall.Listener listener, long threshold, TimeUnit unit) {
+    this.slowCallListener = listener;
+    this.slowCallThresholdNanos = unit.toNanos(threshold);
+  }
+
+  private boolean isMeasured() {
+    return metrics != null || slowCallListener != null;
+  }
+
+  private void measured(Entity.Type type, boolean prefiltered, String text, int count, long nanos) {
+    if (metrics != null) {
+      metrics.extracted(type, prefiltered, text.length(), count, nanos);
+    }
+    if (slowCallListener != null && nanos >= slowCallThresholdNanos) {
+      slowCallListener.slowCall(new SlowCall(SlowCall.Operation.EXTRACTION, type, text, count, nanos));
+    }
+  }
+
   public void setExtractURLWithoutProtocol(boolean extractURLWithoutProtocol) {
     this.extractURLWithoutProtocol = extractURLWithoutProtocol;
   }
@@ -0,0 +1,190 @@
+package com.moandjiezana.tent.text;
+
+import com.moandjiezana.tent.text.Extractor.Entity;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Metrics that aggregate measurements into histograms, which can be read at any time, e.g. by a reporter that
+ * periodically exports them. Updates are lock-free, so one instance can be shared by every thread.
+ */
+public class HistogramMetrics implements Metrics {
+
+  /**
+   * A lock-free histogram of non-negative values with power-of-two buckets. Percentiles are therefore approximate: they
+   * are reported as the upper bound of the bucket they fall into.
+   */
+  public static class Histogram {
+    private static final int BUCKETS = 64;
+
+    // Bucket i holds values v such that 2^(i-1) <= v < 2^i. Bucket 0 holds 0.
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long value) {
+      if (value < 0) {
+        value = 0;
+      }
+      buckets.incrementAndGet(BUCKETS - Long.numberOfLeadingZeros(value));
+      count.incrementAndGet();
+      sum.addAndGet(value);
+      long currentMax = max.get();
+      while (value > currentMax && !max.compareAndSet(currentMax, value)) {
+        currentMax = max.get();
+      }
+    }
+
+    public long getCount() {
+      return count.get();
+    }
+
+    public long getSum() {
+      return sum.get();
+    }
+
+    public long getMax() {
+      return max.get();
+    }
+
+    public double getMean() {
+      long currentCount = count.get();
+      return currentCount == 0 ? 0 : (double) sum.get() / currentCount;
+    }
+
+    /**
+     * @param percentile between 0 and 100
+     * @return an upper bound of the value below which the given percentage of recorded values fall
+     */
+    public long getPercentile(double percentile) {
+      long total = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        total += buckets.get(i);
+      }
+      long rank = (long) Math.ceil(total * percentile / 100);
+      long seen = 0;
+      for (int i = 0; i < BUCKETS; i++) {
+        seen += buckets.get(i);
+        if (seen >= rank && seen > 0) {
+          return i == 0 ? 0 : Math.min((1L << i) - 1, max.get());
+        }
+      }
+      return 0;
+    }
+  }
+
+  /**
+   * Measurements of one stage: extraction of one type of entity, rendering, validation or highlighting.
+   */
+  public static class Stage {
+    private final Histogram nanos = new Histogram();
+    private final Histogram inputLength = new Histogram();
+    private final Histogram count = new Histogram();
+    private final Histogram outputLength = new Histogram();
+    private final AtomicLong prefiltered = new AtomicLong();
+
+    /**
+     * @return time taken per call, in nanoseconds. Its count is the number of calls.
+     */
+    public Histogram getNanos() {
+      return nanos;
+    }
+
+    public Histogram getInputLength() {
+      return inputLength;
+    }
+
+    /**
+     * @return number of entities extracted or rendered, or number of hits highlighted, per call
+     */
+    public Histogram getCount() {
+      return count;
+    }
+
+    /**
+     * @return length of HTML produced per call, for rendering and highlighting
+     */
+    public Histogram getOutputLength() {
+      return outputLength;
+    }
+
+    /**
+     * @return number of extractions where a quick check avoided scanning the text
+     */
+    public long getPrefiltered() {
+      return prefiltered.get();
+    }
+
+    /**
+     * @return share of extractions where a quick check avoided scanning the text, between 0 and 1
+     */
+    public double getPrefilterRate() {
+      long calls = nanos.getCount();
+      return calls == 0 ? 0 : (double) prefiltered.get() / calls;
+    }
+  }
+
+  private final Map<Entity.Type, Stage> extraction = new EnumMap<Entity.Type, Stage>(Entity.Type.class);
+  private final Stage rendering = new Stage();
+  private final Stage validation = new Stage();
+  private final Stage highlighting = new Stage();
+
+  public HistogramMetrics() {
+    for (Entity.Type type : Entity.Type.values()) {
+      extraction.put(type, new Stage());
+    }
+  }
+
+  @Override
+  public void extracted(Entity.Type type, boolean prefiltered, int inputLength, int entityCount, long nanos) {
+    Stage stage = extraction.get(type);
+    stage.nanos.record(nanos);
+    stage.inputLength.record(inputLength);
+    stage.count.record(entityCount);
+    if (prefiltered) {
+      stage.prefiltered.incrementAndGet();
+    }
+  }
+
+  @Override
+  public void rendered(int inputLength, int entityCount, int outputLength, long nanos) {
+    rendering.nanos.record(nanos);
+    rendering.inputLength.record(inputLength);
+    rendering.count.record(entityCount);
+    rendering.outputLength.record(outputLength);
+  }
+
+  @Override
+  public void validated(int inputLength, long nanos) {
+    validation.nanos.record(nanos);
+    validation.inputLength.record(inputLength);
+  }
+
+  @Override
+  public void highlighted(int inputLength, int hitCount, int outputLength, long nanos) {
+    highlighting.nanos.record(nanos);
+    highlighting.inputLength.record(inputLength);
+    highlighting.count.record(hitCount);
+    highlighting.outputLength.record(outputLength);
+  }
+
+  public Stage getExtraction(Entity.Type type) {
+    return extraction.get(type);
+  }
+
+  public Stage getRendering() {
+    return rendering;
+  }
+
+  public Stage getValidation() {
+    return validation;
+  }
+
+  public Stage getHighlighting() {
+    return highlighting;
+  }
+}
@@ -4,6 +4,7 @@ package com.moandjiezana.tent.text;
 import java.text.CharacterIterator;
 import java.text.StringCharacterIterator;
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A class for adding HTML highlighting in Tweet text (such as would be returned from a Search)
@@ -15,6 +16,15 @@ public class HitHighlighter {
   /** the current HTML tag used for hit highlighting */
   protected String highlightTag;
 
+  /** receiver of measurements, if any */
+  protected Metrics metrics;
+
+  /** receiver of slow calls, if any */
+  protected SlowCall.Listener slowCallListener;
+
+  /** minimum time taken by a call reported to <code>slowCallListener</code> */
+  protected long slowCallThresholdNanos;
+
   /** Create a new HitHighlighter object. */
   public HitHighlighter() {
     highlightTag = DEFAULT_HIGHLIGHT_TAG;
@@ -32,7 +42,8 @@ public class HitHighlighter {
     if (hits == null || hits.isEmpty()) {
       return(text);
     }
-    
+
+    long start = metrics == null && slowCallListener == null ? 0 : System.nanoTime();
     StringBuilder sb = new StringBuilder(text.length());
     CharacterIterator iterator = new StringCharacterIterator(text);
     boolean isCounting = true;
@@ -68,10 +79,30 @@ public class HitHighlighter {
     if (tagOpened) {
       sb.append(tag(true));
     }
-    
+
+    if (metrics != null || slowCallListener != null) {
+      long nanos = System.nanoTime() - start;
+      if (metrics != null) {
+        metrics.highlighted(text.length(), hits.size(), sb.length(), nanos);
+      }
+      if (slowCallListener != null && nanos >= slowCallThresholdNanos) {
+        slowCallListener.slowCall(new SlowCall(SlowCall.Operation.HIGHLIGHTING, null, text, hits.size(), nanos));
+      }
+    }
     return(sb.toString());
   }
 
+  /**
+   * Surround every occurrence of the terms of a query in the provided <code>text</code> with an HTML tag.
+   *
+   * @param text of the Tweet to highlight
+   * @param matcher of the query terms
+   * @return text with highlight HTML added
+   */
+  public String highlight(String text, HitMatcher matcher) {
+    return highlight(text, matcher.match(text));
+  }
+
   /**
    * Format the current <code>highlightTag</code> by adding &lt; and >. If <code>closeTag</code> is <code>true</code>
    * then the tag returned will include a <code>/</code> to signify a closing tag.
@@ -105,4 +136,23 @@ public class HitHighlighter {
   public void setHighlightTag(String highlightTag) {
     this.highlightTag = highlightTag;
   }
+
+  /**
+   * Record measurements of highlighting.
+   *
+   * @param metrics receiver of measurements, or null to record none (the default)
+   */
+  public void setMetrics(Metrics metrics) {
+    this.metrics = metrics;
+  }
+
+  /**
+   * Report each highlighting that takes at least the given time.
+   *
+   * @param listener receiver of slow calls, or null to report none (the default)
+   */
+  public void setSlowCallListener(SlowCall.Listener listener, long threshold, TimeUnit unit) {
+    this.slowCallListener = listener;
+    this.slowCallThresholdNanos = unit.toNanos(threshold);
+  }
 }
\ No newline at end of file
@@ -0,0 +1,227 @@
+package com.moandjiezana.tent.text;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Finds every occurrence of a set of query terms in a text in a single pass, as hits for
+ * {@link HitHighlighter#highlight(String, List)}.
+ * <p/>
+ * Terms are compiled into an Aho-Corasick automaton over case-folded code points, so matching takes time proportional
+ * to the length of the text, however many terms there are. A matcher is immutable and can be shared by any number of
+ * threads.
+ * <p/>
+ * Case folding is per code point, so folds that change the length of a string, such as "ß" to "ss", aren't applied.
+ * Characters inside HTML tags are skipped, and offsets are counted the way {@link HitHighlighter} counts them.
+ */
+public class HitMatcher {
+  private static final int ROOT = 0;
+  private static final int NONE = -1;
+
+  private final boolean wholeWords;
+
+  // Transitions of state s are edgeCodePoints[edges[s]..edges[s + 1]], sorted, to edgeTargets
+  private final int[] edges;
+  private final int[] edgeCodePoints;
+  private final int[] edgeTargets;
+  private final int[] failures;
+  // Length in code points of the term ending at each state, or 0
+  private final int[] lengths;
+  // Next state on the failure path at which a term ends, or NONE
+  private final int[] outputs;
+  private final int maxLength;
+
+  /**
+   * Matches terms anywhere, even inside words.
+   */
+  public HitMatcher(String... terms) {
+    this(Arrays.asList(terms), false);
+  }
+
+  /**
+   * @param terms to find. Empty terms are ignored.
+   * @param wholeWords true to only match terms that aren't immediately preceded or followed by a letter or digit
+   *          continuing a word
+   */
+  public HitMatcher(Collection<String> terms, boolean wholeWords) {
+    this.wholeWords = wholeWords;
+
+    List<Map<Integer, Integer>> transitions = new ArrayList<Map<Integer, Integer>>();
+    List<Integer> termLengths = new ArrayList<Integer>();
+    transitions.add(new TreeMap<Integer, Integer>());
+    termLengths.add(0);
+    int longest = 0;
+    for (String term : terms) {
+      int state = ROOT;
+      int length = 0;
+      for (int i = 0; i < term.length(); i += Character.charCount(term.codePointAt(i))) {
+        int codePoint = fold(term.codePointAt(i));
+        Integer next = transitions.get(state).get(codePoint);
+        if (next == null) {
+          next = transitions.size();
+          transitions.add(new TreeMap<Integer, Integer>());
+          termLengths.add(0);
+          transitions.get(state).put(codePoint, next);
+        }
+        state = next;
+        length++;
+      }
+      if (length > 0) {
+        termLengths.set(state, length);
+        longest = Math.max(longest, length);
+      }
+    }
+    this.maxLength = longest;
+
+    int states = transitions.size();
+    edges = new int[states + 1];
+    for (int s = 0; s < states; s++) {
+      edges[s + 1] = edges[s] + transitions.get(s).size();
+    }
+    edgeCodePoints = new int[edges[states]];
+    edgeTargets = new int[edges[states]];
+    lengths = new int[states];
+    for (int s = 0; s < states; s++) {
+      int edge = edges[s];
+      for (Map.Entry<Integer, Integer> transition : transitions.get(s).entrySet()) {
+        edgeCodePoints[edge] = transition.getKey();
+        edgeTargets[edge++] = transition.getValue();
+      }
+      lengths[s] = termLengths.get(s);
+    }
+
+    // Breadth-first, so that the failure of each state is computed before those of its children
+    failures = new int[states];
+    outputs = new int[states];
+    outputs[ROOT] = NONE;
+    LinkedList<Integer> queue = new LinkedList<Integer>();
+    for (int edge = edges[ROOT]; edge < edges[ROOT + 1]; edge++) {
+      failures[edgeTargets[edge]] = ROOT;
+      outputs[edgeTargets[edge]] = NONE;
+      queue.add(edgeTargets[edge]);
+    }
+    while (!queue.isEmpty()) {
+      int state = queue.removeFirst();
+      for (int edge = edges[state]; edge < edges[state + 1]; edge++) {
+        int child = edgeTargets[edge];
+        int failure = next(failures[state], edgeCodePoints[edge]);
+        failures[child] = failure;
+        outputs[child] = lengths[failure] > 0 ? failure : outputs[failure];
+        queue.add(child);
+      }
+    }
+  }
+
+  private static int fold(int codePoint) {
+    return Character.toLowerCase(Character.toUpperCase(codePoint));
+  }
+
+  private int transition(int state, int codePoint) {
+    int found = Arrays.binarySearch(edgeCodePoints, edges[state], edges[state + 1], codePoint);
+    return found < 0 ? NONE : edgeTargets[found];
+  }
+
+  private int next(int state, int codePoint) {
+    while (true) {
+      int next = transition(state, codePoint);
+      if (next != NONE) {
+        return next;
+      }
+      if (state == ROOT) {
+        return ROOT;
+      }
+      state = failures[state];
+    }
+  }
+
+  /**
+   * @param text to search
+   * @return the start and end of each hit, in order. Overlapping hits are merged.
+   */
+  public List<List<Integer>> match(String text) {
+    List<List<Integer>> hits = new ArrayList<List<Integer>>();
+    if (maxLength == 0) {
+      return hits;
+    }
+
+    // Offsets and text indices of the code points matched so far, in a ring as long as the longest term
+    int[] offsets = new int[maxLength];
+    int[] indices = new int[maxLength];
+    int matched = 0;
+    List<int[]> ranges = new ArrayList<int[]>();
+    boolean inTag = false;
+    int offset = 0;
+    int state = ROOT;
+    for (int i = 0; i < text.length();) {
+      int codePoint = text.codePointAt(i);
+      int charCount = Character.charCount(codePoint);
+      if (codePoint == '<') {
+        inTag = true;
+        i++;
+        continue;
+      } else if (inTag) {
+        if (codePoint == '>') {
+          inTag = false;
+          offset++;
+        }
+        i += charCount;
+        continue;
+      }
+
+      offsets[matched % maxLength] = offset;
+      indices[matched % maxLength] = i;
+      matched++;
+      state = next(state, fold(codePoint));
+      for (int output = lengths[state] > 0 ? state : outputs[state]; output != NONE; output = outputs[output]) {
+        int first = (matched - lengths[output]) % maxLength;
+        if (!wholeWords || (isWordBoundary(text, indices[first]) && isWordBoundary(text, i + charCount))) {
+          ranges.add(new int[] { offsets[first], offset + charCount });
+        }
+      }
+      offset += charCount;
+      i += charCount;
+    }
+
+    // Hits end in order, but longer ones may start before those already found
+    if (ranges.size() > 1) {
+      Collections.sort(ranges, new Comparator<int[]>() {
+        @Override
+        public int compare(int[] a, int[] b) {
+          return a[0] < b[0] ? -1 : (a[0] == b[0] ? 0 : 1);
+        }
+      });
+    }
+    int[] current = null;
+    for (int[] range : ranges) {
+      if (current != null && range[0] < current[1]) {
+        current[1] = Math.max(current[1], range[1]);
+      } else {
+        if (current != null) {
+          hits.add(Arrays.asList(current[0], current[1]));
+        }
+        current = range;
+      }
+    }
+    if (current != null) {
+      hits.add(Arrays.asList(current[0], current[1]));
+    }
+    return hits;
+  }
+
+  /**
+   * @return false if the code points on both sides of the index are letters or digits
+   */
+  private static boolean isWordBoundary(String text, int index) {
+    if (index == 0 || index == text.length()) {
+      return true;
+    }
+    return !Character.isLetterOrDigit(text.codePointBefore(index)) || !Character.isLetterOrDigit(text.codePointAt(index));
+  }
+}
@@ -0,0 +1,51 @@
+package com.moandjiezana.tent.text;
+
+import com.moandjiezana.tent.text.Extractor.Entity;
+
+/**
+ * Receives measurements from {@link Extractor}, {@link Autolink}, {@link Validator} and {@link HitHighlighter}.
+ * <p/>
+ * No metrics are recorded by default. When none are set, no time is measured, so there is no overhead. Implementations
+ * are called on the thread doing the work and must be thread-safe and fast. See {@link HistogramMetrics}.
+ */
+public interface Metrics {
+
+  /**
+   * Called after each extraction of one type of entity.
+   *
+   * @param type of entity extracted
+   * @param prefiltered true if a quick check showed the text couldn't contain this type of entity, so it wasn't scanned
+   * @param inputLength length of the text
+   * @param entityCount number of entities extracted
+   * @param nanos time taken
+   */
+  void extracted(Entity.Type type, boolean prefiltered, int inputLength, int entityCount, long nanos);
+
+  /**
+   * Called after entities are rendered as links.
+   *
+   * @param inputLength length of the text
+   * @param entityCount number of entities rendered
+   * @param outputLength length of the HTML produced
+   * @param nanos time taken
+   */
+  void rendered(int inputLength, int entityCount, int outputLength, long nanos);
+
+  /**
+   * Called after the length of a text is computed for validation.
+   *
+   * @param inputLength length of the text
+   * @param nanos time taken
+   */
+  void validated(int inputLength, long nanos);
+
+  /**
+   * Called after hits are highlighted.
+   *
+   * @param inputLength length of the text
+   * @param hitCount number of hits
+   * @param outputLength length of the HTML produced
+   * @param nanos time taken
+   */
+  void highlighted(int inputLength, int hitCount, int outputLength, long nanos);
+}
@@ -0,0 +1,380 @@
+package com.moandjiezana.tent.text;
+
+import com.moandjiezana.tent.text.Extractor.Entity;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * An append-only store of extracted entities, keyed by post id, that keeps its data outside of the Java heap, either in
+ * direct buffers or in memory-mapped files.
+ * <p/>
+ * Each entity is a fixed-width record of its post id, start, end, type and the ids of its value and list slug. Values
+ * and list slugs are stored once each, as UTF-8, in a separate string region. The only data on the heap is a hash table
+ * of 16 to 32 bytes per distinct string, used to deduplicate them.
+ * <p/>
+ * Posts must be appended in ascending order of id, so that the entities of a post can be found by binary search.
+ * Appending is synchronized, and any number of threads can read the entities appended so far while another appends.
+ * The store is meant for the duration of a batch job: files are deleted when it is closed.
+ */
+public class OffHeapEntityStore implements Closeable {
+  /** Default size of each direct buffer or mapped file */
+  public static final int DEFAULT_SEGMENT_SIZE = 64 * 1024 * 1024;
+
+  private static final Charset UTF_8 = Charset.forName("UTF-8");
+  private static final Entity.Type[] TYPES = Entity.Type.values();
+
+  // Layout of a record
+  private static final int RECORD_SIZE = 32;
+  private static final int POST_ID = 0;
+  private static final int START = 8;
+  private static final int END = 12;
+  private static final int VALUE = 16;
+  private static final int LIST_SLUG = 20;
+  private static final int TYPE = 24;
+
+  private static final int NO_STRING = -1;
+
+  /**
+   * Bytes stored in fixed-size segments, allocated as they are needed.
+   */
+  private static final class Region {
+    private final String name;
+    private final File directory;
+    private final int segmentShift;
+    private final int segmentMask;
+    private final List<ByteBuffer> segments = new CopyOnWriteArrayList<ByteBuffer>();
+    private final List<File> files = new ArrayList<File>();
+
+    Region(String name, File directory, int segmentSize) {
+      this.name = name;
+      this.directory = directory;
+      this.segmentShift = Integer.numberOfTrailingZeros(segmentSize);
+      this.segmentMask = segmentSize - 1;
+    }
+
+    int segmentSize() {
+      return segmentMask + 1;
+    }
+
+    ByteBuffer segment(long position) {
+      return segments.get((int) (position >>> segmentShift));
+    }
+
+    int offset(long position) {
+      return (int) (position & segmentMask);
+    }
+
+    long capacity() {
+      return (long) segments.size() << segmentShift;
+    }
+
+    void ensureCapacity(long end) throws IOException {
+      while (capacity() < end) {
+        if (directory == null) {
+          segments.add(ByteBuffer.allocateDirect(segmentSize()));
+        } else {
+          File file = File.createTempFile(name + "-", ".bin", directory);
+          files.add(file);
+          RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+          try {
+            randomAccessFile.setLength(segmentSize());
+            segments.add(randomAccessFile.getChannel().map(FileChannel.MapMode.READ_WRITE, 0, segmentSize()));
+          } finally {
+            // The mapping stays valid after the file is closed
+            randomAccessFile.close();
+          }
+        }
+      }
+    }
+
+    void close() {
+      // Buffers can't be released explicitly, so this leaves them to the garbage collector
+      segments.clear();
+      for (File file : files) {
+        file.delete();
+      }
+      files.clear();
+    }
+  }
+
+  private final Region records;
+  private final Region strings;
+  private final Region stringOffsets;
+
+  private volatile long size = 0;
+  private long lastPostId = Long.MIN_VALUE;
+  private long stringPosition = 0;
+  private int stringCount = 0;
+
+  // Open-addressing table of string ids, with the hash of each string to avoid comparing most of them
+  private int[] stringTable = newTable(1024);
+  private int[] stringHashes = new int[1024];
+
+  /**
+   * Keeps data in direct buffers of {@link #DEFAULT_SEGMENT_SIZE}.
+   */
+  public OffHeapEntityStore() {
+    this(null, DEFAULT_SEGMENT_SIZE);
+  }
+
+  /**
+   * @param directory where to create memory-mapped files, or null to use direct buffers
+   * @param segmentSize size of each direct buffer or mapped file: a power of two of at least 64 bytes. Values longer
+   *          than this minus 4 bytes can't be stored.
+   */
+  public OffHeapEntityStore(File directory, int segmentSize) {
+    if (segmentSize < 64 || Integer.bitCount(segmentSize) != 1) {
+      throw new IllegalArgumentException("Segment size must be a power of two of at least 64: " + segmentSize);
+    }
+    this.records = new Region("records", directory, segmentSize);
+    this.strings = new Region("strings", directory, segmentSize);
+    this.stringOffsets = new Region("string-offsets", directory, segmentSize);
+  }
+
+  private static int[] newTable(int capacity) {
+    int[] table = new int[capacity];
+    Arrays.fill(table, NO_STRING);
+    return table;
+  }
+
+  /**
+   * Stores the entities of a post.
+   *
+   * @param postId must not be lower than that of the previous post appended
+   * @param entities as returned by {@link Extractor}
+   */
+  public synchronized void append(long postId, List<Entity> entities) throws IOException {
+    if (postId < lastPostId) {
+      throw new IllegalArgumentException("Post " + postId + " appended after post " + lastPostId);
+    }
+    lastPostId = postId;
+
+    long count = size;
+    records.ensureCapacity((count + entities.size()) * RECORD_SIZE);
+    for (Entity entity : entities) {
+      long position = count * RECORD_SIZE;
+      ByteBuffer segment = records.segment(position);
+      int offset = records.offset(position);
+      segment.putLong(offset + POST_ID, postId);
+      segment.putInt(offset + START, entity.start);
+      segment.putInt(offset + END, entity.end);
+      segment.putInt(offset + VALUE, intern(entity.value));
+      segment.putInt(offset + LIST_SLUG, entity.listSlug == null ? NO_STRING : intern(entity.listSlug));
+      segment.put(offset + TYPE, (byte) entity.type.ordinal());
+      count++;
+    }
+    // Publishes the records to readers
+    size = count;
+  }
+
+  private int intern(String value) throws IOException {
+    byte[] bytes = value.getBytes(UTF_8);
+    int hash = value.hashCode();
+    hash ^= hash >>> 16;
+    int mask = stringTable.length - 1;
+    int slot = hash & mask;
+    while (stringTable[slot] != NO_STRING) {
+      if (stringHashes[slot] == hash && storedEquals(stringTable[slot], bytes)) {
+        return stringTable[slot];
+      }
+      slot = (slot + 1) & mask;
+    }
+
+    if (bytes.length + 4 > strings.segmentSize()) {
+      throw new IllegalArgumentException("Value too long to be stored: " + bytes.length + " bytes");
+    }
+    if (strings.offset(stringPosition) + bytes.length + 4 > strings.segmentSize()) {
+      // Strings don't span segments
+      stringPosition = (stringPosition | (strings.segmentSize() - 1)) + 1;
+    }
+    strings.ensureCapacity(stringPosition + bytes.length + 4);
+    ByteBuffer segment = strings.segment(stringPosition);
+    int offset = strings.offset(stringPosition);
+    segment.putInt(offset, bytes.length);
+    for (int i = 0; i < bytes.length; i++) {
+      segment.put(offset + 4 + i, bytes[i]);
+    }
+
+    int id = stringCount++;
+    long offsetPosition = (long) id * 8;
+    stringOffsets.ensureCapacity(offsetPosition + 8);
+    stringOffsets.segment(offsetPosition).putLong(stringOffsets.offset(offsetPosition), stringPosition);
+    stringPosition += bytes.length + 4;
+
+    stringTable[slot] = id;
+    stringHashes[slot] = hash;
+    if (stringCount * 2 > stringTable.length) {
+      rehash();
+    }
+    return id;
+  }
+
+  private boolean storedEquals(int id, byte[] bytes) {
+    long position = stringOffset(id);
+    ByteBuffer segment = strings.segment(position);
+    int offset = strings.offset(position);
+    if (segment.getInt(offset) != bytes.length) {
+      return false;
+    }
+    for (int i = 0; i < bytes.length; i++) {
+      if (segment.get(offset + 4 + i) != bytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private void rehash() {
+    int[] table = newTable(stringTable.length * 2);
+    int[] hashes = new int[table.length];
+    int mask = table.length - 1;
+    for (int i = 0; i < stringTable.length; i++) {
+      if (stringTable[i] != NO_STRING) {
+        int slot = stringHashes[i] & mask;
+        while (table[slot] != NO_STRING) {
+          slot = (slot + 1) & mask;
+        }
+        table[slot] = stringTable[i];
+        hashes[slot] = stringHashes[i];
+      }
+    }
+    stringTable = table;
+    stringHashes = hashes;
+  }
+
+  private long stringOffset(int id) {
+    long position = (long) id * 8;
+    return stringOffsets.segment(position).getLong(stringOffsets.offset(position));
+  }
+
+  private String string(int id) {
+    if (id == NO_STRING) {
+      return null;
+    }
+    long position = stringOffset(id);
+    ByteBuffer segment = strings.segment(position);
+    int offset = strings.offset(position);
+    // Decodes from a view of the segment, which readers can share, rather than copying the bytes out first
+    ByteBuffer bytes = segment.duplicate();
+    bytes.limit(offset + 4 + segment.getInt(offset)).position(offset + 4);
+    return UTF_8.decode(bytes).toString();
+  }
+
+  /**
+   * @return the number of entities stored
+   */
+  public long size() {
+    return size;
+  }
+
+  /**
+   * @return the number of distinct values and list slugs stored
+   */
+  public synchronized int getStringCount() {
+    return stringCount;
+  }
+
+  /**
+   * @return the number of bytes allocated outside of the heap
+   */
+  public long getCapacity() {
+    return records.capacity() + strings.capacity() + stringOffsets.capacity();
+  }
+
+  private ByteBuffer record(long index) {
+    if (index < 0 || index >= size) {
+      throw new IndexOutOfBoundsException("Entity " + index + " of " + size);
+    }
+    return records.segment(index * RECORD_SIZE);
+  }
+
+  private int offset(long index) {
+    return records.offset(index * RECORD_SIZE);
+  }
+
+  public long getPostId(long index) {
+    return record(index).getLong(offset(index) + POST_ID);
+  }
+
+  public int getStart(long index) {
+    return record(index).getInt(offset(index) + START);
+  }
+
+  public int getEnd(long index) {
+    return record(index).getInt(offset(index) + END);
+  }
+
+  public Entity.Type getType(long index) {
+    return TYPES[record(index).get(offset(index) + TYPE)];
+  }
+
+  public String getValue(long index) {
+    return string(record(index).getInt(offset(index) + VALUE));
+  }
+
+  /**
+   * @return the list slug of a mention of a list, or null
+   */
+  public String getListSlug(long index) {
+    return string(record(index).getInt(offset(index) + LIST_SLUG));
+  }
+
+  public Entity getEntity(long index) {
+    return new Entity(getStart(index), getEnd(index), getValue(index), getListSlug(index), getType(index));
+  }
+
+  /**
+   * @return the index of the first entity of the post, or -1 if it has none
+   */
+  public long indexOf(long postId) {
+    long low = 0;
+    long high = size - 1;
+    while (low <= high) {
+      long middle = (low + high) >>> 1;
+      if (getPostId(middle) < postId) {
+        low = middle + 1;
+      } else {
+        high = middle - 1;
+      }
+    }
+    return low < size && getPostId(low) == postId ? low : -1;
+  }
+
+  /**
+   * @return the entities of the post, in the order they were appended
+   */
+  public List<Entity> getEntities(long postId) {
+    long index = indexOf(postId);
+    if (index == -1) {
+      return Collections.emptyList();
+    }
+    List<Entity> entities = new ArrayList<Entity>();
+    long count = size;
+    for (; index < count && getPostId(index) == postId; index++) {
+      entities.add(getEntity(index));
+    }
+    return entities;
+  }
+
+  /**
+   * Releases the buffers and deletes the files of this store. It can't be used afterwards.
+   */
+  @Override
+  public synchronized void close() {
+    size = 0;
+    records.close();
+    strings.close();
+    stringOffsets.close();
+  }
+}
@@ -4,7 +4,7 @@ package com.moandjiezana.tent.text;
 import java.util.regex.Pattern;
 
 public class Regex {
-  private static final String UNICODE_SPACES = "[" +
+  static final String UNICODE_SPACES = "[" +
     "\\u0009-\\u000d" +     //  # White_Space # Cc   [5] <control-0009>..<control-000D>
     "\\u0020" +             // White_Space # Zs       SPACE
     "\\u0085" +             // White_Space # Cc       <control-0085>
@@ -19,13 +19,13 @@ public class Regex {
     "\\u3000" +              // White_Space # Zs       IDEOGRAPHIC SPACE
   "]";
 
-  private static String LATIN_ACCENTS_CHARS = "\\u00c0-\\u00d6\\u00d8-\\u00f6\\u00f8-\\u00ff" + // Latin-1
+  static final String LATIN_ACCENTS_CHARS = "\\u00c0-\\u00d6\\u00d8-\\u00f6\\u00f8-\\u00ff" + // Latin-1
                                               "\\u0100-\\u024f" + // Latin Extended A and B
                                               "\\u0253\\u0254\\u0256\\u0257\\u0259\\u025b\\u0263\\u0268\\u026f\\u0272\\u0289\\u028b" + // IPA Extensions
                                               "\\u02bb" + // Hawaiian
                                               "\\u0300-\\u036f" + // Combining diacritics
                                               "\\u1e00-\\u1eff"; // Latin Extended Additional (mostly for Vietnamese)
-  private static final String HASHTAG_ALPHA_CHARS = "a-z" + LATIN_ACCENTS_CHARS +
+  static final String HASHTAG_ALPHA_CHARS = "a-z" + LATIN_ACCENTS_CHARS +
                                                    "\\u0400-\\u04ff\\u0500-\\u0527" +  // Cyrillic
                                                    "\\u2de0-\\u2dff\\ua640-\\ua69f" +  // Cyrillic Extended A/B
                                                    "\\u0591-\\u05bf\\u05c1-\\u05c2\\u05c4-\\u05c5\\u05c7" +
@@ -46,7 +46,7 @@ public class Regex {
                                                    "\\uff21-\\uff3a\\uff41-\\uff5a" +  // full width Alphabet
                                                    "\\uff66-\\uff9f" +                 // half width Katakana
                                                    "\\uffa1-\\uffdc";                  // half width Hangul (Korean)
-  private static final String HASHTAG_ALPHA_NUMERIC_CHARS = "0-9\\uff10-\\uff19_" + HASHTAG_ALPHA_CHARS;
+  static final String HASHTAG_ALPHA_NUMERIC_CHARS = "0-9\\uff10-\\uff19_" + HASHTAG_ALPHA_CHARS;
   private static final String HASHTAG_ALPHA = "[" + HASHTAG_ALPHA_CHARS +"]";
   private static final String HASHTAG_ALPHA_NUMERIC = "[" + HASHTAG_ALPHA_NUMERIC_CHARS +"]";
 
@@ -132,32 +132,32 @@ public class Regex {
     ")" +
   ")";
 
-  private static String AT_SIGNS_CHARS = "\\^\u005E";
+  private static final String AT_SIGNS_CHARS = "\\^\u005E";
 
   private static final String DOLLAR_SIGN_CHAR = "\\$";
   private static final String CASHTAG = "[a-z]{1,6}(?:[._][a-z]{1,2})?";
 
   /* Begin public constants */
 
-  public static final Pattern VALID_HASHTAG = Pattern.compile("(^|[^&" + HASHTAG_ALPHA_NUMERIC_CHARS + "])(#|\uFF03)(" + HASHTAG_ALPHA_NUMERIC + "*" + HASHTAG_ALPHA + HASHTAG_ALPHA_NUMERIC + "*)", Pattern.CASE_INSENSITIVE);
+  public static final Pattern VALID_HASHTAG = Hashtags.VALID_HASHTAG;
   public static final int VALID_HASHTAG_GROUP_BEFORE = 1;
   public static final int VALID_HASHTAG_GROUP_HASH = 2;
   public static final int VALID_HASHTAG_GROUP_TAG = 3;
-  public static final Pattern INVALID_HASHTAG_MATCH_END = Pattern.compile("^(?:[#＃]|://)");
+  public static final Pattern INVALID_HASHTAG_MATCH_END = Hashtags.INVALID_HASHTAG_MATCH_END;
 
-  public static final Pattern AT_SIGNS = Pattern.compile("[" + AT_SIGNS_CHARS + "]");
-  public static final Pattern VALID_MENTION_OR_LIST = Pattern.compile("([^a-z0-9_!#$%&*" + AT_SIGNS_CHARS + "]|^|RT:?)(" + AT_SIGNS + "+)([a-z0-9_]{1,20})(/[a-z][a-z0-9_\\-]{0,24})?", Pattern.CASE_INSENSITIVE);
+  public static final Pattern AT_SIGNS = Mentions.AT_SIGNS;
+  public static final Pattern VALID_MENTION_OR_LIST = Mentions.VALID_MENTION_OR_LIST;
   public static final int VALID_MENTION_OR_LIST_GROUP_BEFORE = 1;
   public static final int VALID_MENTION_OR_LIST_GROUP_AT = 2;
   public static final int VALID_MENTION_OR_LIST_GROUP_USERNAME = 3;
   public static final int VALID_MENTION_OR_LIST_GROUP_LIST = 4;
 
-  public static final Pattern VALID_REPLY = Pattern.compile("^(?:" + UNICODE_SPACES + ")*" + AT_SIGNS + "([a-z0-9_]{1,20})", Pattern.CASE_INSENSITIVE);
+  public static final Pattern VALID_REPLY = Mentions.VALID_REPLY;
   public static final int VALID_REPLY_GROUP_USERNAME = 1;
 
-  public static final Pattern INVALID_MENTION_MATCH_END = Pattern.compile("^(?:[" + AT_SIGNS_CHARS + LATIN_ACCENTS_CHARS + "]|://)");
+  public static final Pattern INVALID_MENTION_MATCH_END = Mentions.INVALID_MENTION_MATCH_END;
 
-  public static final Pattern VALID_URL = Pattern.compile(VALID_URL_PATTERN_STRING, Pattern.CASE_INSENSITIVE);
+  public static final Pattern VALID_URL = Urls.VALID_URL;
   public static final int VALID_URL_GROUP_ALL          = 1;
   public static final int VALID_URL_GROUP_BEFORE       = 2;
   public static final int VALID_URL_GROUP_URL          = 3;
@@ -167,11 +167,41 @@ public class Regex {
   public static final int VALID_URL_GROUP_PATH         = 7;
   public static final int VALID_URL_GROUP_QUERY_STRING = 8;
 
-  public static final Pattern VALID_TCO_URL = Pattern.compile("^https?:\\/\\/t\\.co\\/[a-z0-9]+", Pattern.CASE_INSENSITIVE);
-  public static final Pattern INVALID_URL_WITHOUT_PROTOCOL_MATCH_BEGIN = Pattern.compile("[-_./]$");
+  public static final Pattern VALID_TCO_URL = Urls.VALID_TCO_URL;
+  public static final Pattern INVALID_URL_WITHOUT_PROTOCOL_MATCH_BEGIN = Urls.INVALID_URL_WITHOUT_PROTOCOL_MATCH_BEGIN;
 
-  public static final Pattern VALID_CASHTAG = Pattern.compile("(^|" + UNICODE_SPACES + ")(" + DOLLAR_SIGN_CHAR + ")(" + CASHTAG + ")" +"(?=$|\\s|\\p{Punct})", Pattern.CASE_INSENSITIVE);
+  public static final Pattern VALID_CASHTAG = Cashtags.VALID_CASHTAG;
   public static final int VALID_CASHTAG_GROUP_BEFORE = 1;
   public static final int VALID_CASHTAG_GROUP_DOLLAR = 2;
   public static final int VALID_CASHTAG_GROUP_CASHTAG = 3;
+
+  /*
+   * Lazily compiled patterns.
+   *
+   * Loading Regex compiles every pattern above. Holders are only initialized the first time one of their patterns is
+   * used, so the library itself uses them directly to avoid compiling patterns a process never needs. The pattern
+   * strings they are built from are compile-time constants, so using a holder doesn't initialize Regex.
+   */
+
+  static final class Hashtags {
+    static final Pattern VALID_HASHTAG = Pattern.compile("(^|[^&" + HASHTAG_ALPHA_NUMERIC_CHARS + "])(#|\uFF03)(" + HASHTAG_ALPHA_NUMERIC + "*" + HASHTAG_ALPHA + HASHTAG_ALPHA_NUMERIC + "*)", Pattern.CASE_INSENSITIVE);
+    static final Pattern INVALID_HASHTAG_MATCH_END = Pattern.compile("^(?:[#＃]|://)");
+  }
+
+  static final class Mentions {
+    static final Pattern AT_SIGNS = Pattern.compile("[" + AT_SIGNS_CHARS + "]");
+    static final Pattern VALID_MENTION_OR_LIST = Pattern.compile("([^a-z0-9_!#$%&*" + AT_SIGNS_CHARS + "]|^|RT:?)([" + AT_SIGNS_CHARS + "]+)([a-z0-9_]{1,20})(/[a-z][a-z0-9_\\-]{0,24})?", Pattern.CASE_INSENSITIVE);
+    static final Pattern VALID_REPLY = Pattern.compile("^(?:" + UNICODE_SPACES + ")*[" + AT_SIGNS_CHARS + "]([a-z0-9_]{1,20})", Pattern.CASE_INSENSITIVE);
+    static final Pattern INVALID_MENTION_MATCH_END = Pattern.compile("^(?:[" + AT_SIGNS_CHARS + LATIN_ACCENTS_CHARS + "]|://)");
+  }
+
+  static final class Urls {
+    static final Pattern VALID_URL = Pattern.compile(VALID_URL_PATTERN_STRING, Pattern.CASE_INSENSITIVE);
+    static final Pattern VALID_TCO_URL = Pattern.compile("^https?:\\/\\/t\\.co\\/[a-z0-9]+", Pattern.CASE_INSENSITIVE);
+    static final Pattern INVALID_URL_WITHOUT_PROTOCOL_MATCH_BEGIN = Pattern.compile("[-_./]$");
+  }
+
+  static final class Cashtags {
+    static final Pattern VALID_CASHTAG = Pattern.compile("(^|" + UNICODE_SPACES + ")(" + DOLLAR_SIGN_CHAR + ")(" + CASHTAG + ")" +"(?=$|\\s|\\p{Punct})", Pattern.CASE_INSENSITIVE);
+  }
 }
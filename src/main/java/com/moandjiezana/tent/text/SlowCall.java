@@ -0,0 +1,123 @@
+package com.moandjiezana.tent.text;
+
+import com.moandjiezana.tent.text.Extractor.Entity;
+
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * An extraction, rendering, validation or highlighting call that took longer than the threshold given with
+ * setSlowCallListener. Reported to a {@link Listener}, e.g. one that commits a Java Flight Recorder event.
+ */
+public class SlowCall {
+  public enum Operation {
+    EXTRACTION, RENDERING, VALIDATION, HIGHLIGHTING
+  }
+
+  /**
+   * Receives slow calls on the thread that made them, after they complete. Implementations must be thread-safe.
+   */
+  public static interface Listener {
+    void slowCall(SlowCall call);
+  }
+
+  /** Number of hexadecimal digits of the SHA-256 of the input kept by {@link #getInputHash()} */
+  private static final int HASH_LENGTH = 16;
+  private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+  private final Operation operation;
+  private final Entity.Type entityType;
+  private final String input;
+  private final int count;
+  private final long nanos;
+  private String inputHash;
+
+  SlowCall(Operation operation, Entity.Type entityType, String input, int count, long nanos) {
+    this.operation = operation;
+    this.entityType = entityType;
+    this.input = input;
+    this.count = count;
+    this.nanos = nanos;
+  }
+
+  /**
+   * A copy of the call with a different input, which keeps the hash of the original input.
+   */
+  SlowCall withInput(String newInput) {
+    if (newInput.equals(input)) {
+      return this;
+    }
+    SlowCall call = new SlowCall(operation, entityType, newInput, count, nanos);
+    call.inputHash = getInputHash();
+    return call;
+  }
+
+  public Operation getOperation() {
+    return operation;
+  }
+
+  /**
+   * @return the type of entity extracted, or null if this isn't an extraction
+   */
+  public Entity.Type getEntityType() {
+    return entityType;
+  }
+
+  /**
+   * @return the text that was processed. Don't keep it unless sensitive inputs may be retained.
+   */
+  public String getInput() {
+    return input;
+  }
+
+  public int getInputLength() {
+    return input.length();
+  }
+
+  /**
+   * @return number of entities extracted or rendered, or number of hits highlighted. 0 for validation.
+   */
+  public int getCount() {
+    return count;
+  }
+
+  public long getNanos() {
+    return nanos;
+  }
+
+  /**
+   * @return the first 16 hexadecimal digits of the SHA-256 of the input as it was processed, encoded as UTF-8.
+   *         Identifies the input without revealing it, even after it is truncated or redacted.
+   */
+  public String getInputHash() {
+    if (inputHash == null) {
+      inputHash = hash(input);
+    }
+    return inputHash;
+  }
+
+  static String hash(String text) {
+    byte[] digest;
+    try {
+      digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes("UTF-8"));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    } catch (UnsupportedEncodingException e) {
+      throw new IllegalStateException(e);
+    }
+
+    char[] hex = new char[HASH_LENGTH];
+    for (int i = 0; i < HASH_LENGTH; i++) {
+      int b = digest[i / 2];
+      hex[i] = HEX_DIGITS[i % 2 == 0 ? (b >> 4) & 0xf : b & 0xf];
+    }
+    return new String(hex);
+  }
+
+  @Override
+  public String toString() {
+    return operation + (entityType == null ? "" : " " + entityType) + " took " + nanos + "ns [length=" + input.length()
+        + ", count=" + count + ", hash=" + getInputHash() + "]";
+  }
+}
@@ -0,0 +1,241 @@
+package com.moandjiezana.tent.text;
+
+import com.moandjiezana.tent.text.Extractor.Entity;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Keeps the inputs of the most recent slow calls, so that posts that cause latency spikes can be reproduced. Register
+ * it with setSlowCallListener, then {@link #dump(Writer)} the captured inputs and replay them with
+ * {@link #read(Reader)}, e.g. in a benchmark.
+ * <p/>
+ * Captures are stored in a fixed-size ring buffer: once it is full, each capture replaces the oldest one. Capturing is
+ * lock-free, so one instance can be shared by every thread. Each capture is numbered in the order it arrives, and a
+ * slot only takes a capture numbered after the one it holds, so a thread delayed while capturing can't overwrite a
+ * more recent capture.
+ */
+public class SlowInputCapture implements SlowCall.Listener {
+
+  /**
+   * Removes sensitive content from inputs before they are kept, e.g. by replacing mentions or email addresses.
+   * Redacting should preserve the structure that made the call slow.
+   */
+  public static interface Redactor {
+    String redact(String input);
+  }
+
+  private static final class Capture {
+    final long sequence;
+    final SlowCall call;
+
+    Capture(long sequence, SlowCall call) {
+      this.sequence = sequence;
+      this.call = call;
+    }
+  }
+
+  /** Default number of inputs kept */
+  public static final int DEFAULT_CAPACITY = 64;
+  /** Default maximum number of characters kept from each input */
+  public static final int DEFAULT_MAX_INPUT_LENGTH = 10000;
+
+  /** Matches the description written by {@link SlowCall#toString()}, as dumped */
+  private static final Pattern CALL_DESCRIPTION = Pattern.compile("# (EXTRACTION|RENDERING|VALIDATION|HIGHLIGHTING)"
+      + "(?: (URL|HASHTAG|MENTION|CASHTAG))? took (\\d+)ns \\[length=\\d+, count=(\\d+), hash=[0-9a-f]+\\]");
+
+  private final AtomicReferenceArray<Capture> captures;
+  private final AtomicLong captured = new AtomicLong();
+  /** Number of calls captured before the last {@link #clear()} */
+  private volatile long cleared = 0;
+  private final int maxInputLength;
+  private Redactor redactor = null;
+
+  public SlowInputCapture() {
+    this(DEFAULT_CAPACITY, DEFAULT_MAX_INPUT_LENGTH);
+  }
+
+  /**
+   * @param capacity maximum number of inputs kept
+   * @param maxInputLength maximum number of characters kept from each input. Longer inputs are truncated.
+   */
+  public SlowInputCapture(int capacity, int maxInputLength) {
+    if (capacity < 1) {
+      throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+    }
+    this.captures = new AtomicReferenceArray<Capture>(capacity);
+    this.maxInputLength = maxInputLength;
+  }
+
+  @Override
+  public void slowCall(SlowCall call) {
+    String input = call.getInput();
+    if (redactor != null) {
+      input = redactor.redact(input);
+    }
+    if (input.length() > maxInputLength) {
+      int end = maxInputLength;
+      if (end > 0 && Character.isHighSurrogate(input.charAt(end - 1))) {
+        end--;
+      }
+      input = input.substring(0, end);
+    }
+
+    long sequence = captured.getAndIncrement();
+    Capture capture = new Capture(sequence, call.withInput(input));
+    int slot = (int) (sequence % captures.length());
+    while (true) {
+      Capture current = captures.get(slot);
+      if (current != null && current.sequence > sequence) {
+        // Replaced by a more recent capture while this thread was delayed
+        return;
+      }
+      if (captures.compareAndSet(slot, current, capture)) {
+        return;
+      }
+    }
+  }
+
+  /**
+   * @return the calls captured and still kept, oldest first. Their inputs are truncated and redacted.
+   */
+  public List<SlowCall> getCaptured() {
+    long end = captured.get();
+    long start = Math.max(cleared, end - captures.length());
+    List<SlowCall> calls = new ArrayList<SlowCall>((int) Math.max(0, end - start));
+    for (long i = start; i < end; i++) {
+      Capture capture = captures.get((int) (i % captures.length()));
+      // Skips captures counted but not yet stored by a concurrent thread, and those already replaced
+      if (capture != null && capture.sequence == i) {
+        calls.add(capture.call);
+      }
+    }
+    return calls;
+  }
+
+  /**
+   * @return the number of calls captured since creation or the last {@link #clear()}, including those no longer kept
+   */
+  public long getCapturedCount() {
+    return captured.get() - cleared;
+  }
+
+  public void clear() {
+    // Numbering goes on, so that captures in progress are still ordered after those made before
+    cleared = captured.get();
+    for (int i = 0; i < captures.length(); i++) {
+      Capture capture = captures.get(i);
+      if (capture != null && capture.sequence < cleared) {
+        captures.compareAndSet(i, capture, null);
+      }
+    }
+  }
+
+  /**
+   * Writes the captured calls, oldest first, in the format read by {@link #read(Reader)}: a comment line describing
+   * the call, then the input on one line, with backslashes, carriage returns and line feeds escaped. The line is empty
+   * for an empty input.
+   *
+   * @param writer destination of the calls. It is not closed.
+   */
+  public void dump(Writer writer) throws IOException {
+    for (SlowCall call : getCaptured()) {
+      writer.write("# " + call + "\n");
+      writer.write(escape(call.getInput()));
+      writer.write('\n');
+    }
+    writer.flush();
+  }
+
+  /**
+   * Reads calls written by {@link #dump(Writer)}. Each line describing a call is followed by its input, even if empty.
+   * Other blank lines and lines starting with # are ignored.
+   *
+   * @param reader source of calls. It is not closed.
+   * @return the calls, in the order they were written, with the operation, entity type, count and duration described
+   * @throws IOException if an input isn't preceded by the description of its call, or a description isn't followed by
+   *         an input
+   */
+  public static List<SlowCall> read(Reader reader) throws IOException {
+    BufferedReader bufferedReader = new BufferedReader(reader);
+    List<SlowCall> calls = new ArrayList<SlowCall>();
+    Matcher description = null;
+    String line;
+    for (int lineNumber = 1; (line = bufferedReader.readLine()) != null; lineNumber++) {
+      if (description != null) {
+        SlowCall.Operation operation = SlowCall.Operation.valueOf(description.group(1));
+        Entity.Type entityType = description.group(2) == null ? null : Entity.Type.valueOf(description.group(2));
+        calls.add(new SlowCall(operation, entityType, unescape(line), Integer.parseInt(description.group(4)),
+            Long.parseLong(description.group(3))));
+        description = null;
+      } else if (line.startsWith("#")) {
+        Matcher matcher = CALL_DESCRIPTION.matcher(line);
+        if (matcher.matches()) {
+          description = matcher;
+        }
+      } else if (!line.isEmpty()) {
+        throw new IOException("Input without a call description on line " + lineNumber);
+      }
+    }
+    if (description != null) {
+      throw new IOException("Missing input after the last call description");
+    }
+    return calls;
+  }
+
+  private static String escape(String input) {
+    StringBuilder builder = new StringBuilder(input.length() + 16);
+    if (input.startsWith("#")) {
+      // Distinguish an input starting with # from a comment
+      builder.append('\\');
+    }
+    for (int i = 0; i < input.length(); i++) {
+      char c = input.charAt(i);
+      if (c == '\\') {
+        builder.append("\\\\");
+      } else if (c == '\n') {
+        builder.append("\\n");
+      } else if (c == '\r') {
+        builder.append("\\r");
+      } else {
+        builder.append(c);
+      }
+    }
+    return builder.toString();
+  }
+
+  private static String unescape(String line) {
+    StringBuilder builder = new StringBuilder(line.length());
+    for (int i = 0; i < line.length(); i++) {
+      char c = line.charAt(i);
+      if (c == '\\' && i + 1 < line.length()) {
+        char next = line.charAt(++i);
+        if (next == 'n') {
+          builder.append('\n');
+        } else if (next == 'r') {
+          builder.append('\r');
+        } else {
+          builder.append(next);
+        }
+      } else {
+        builder.append(c);
+      }
+    }
+    return builder.toString();
+  }
+
+  /**
+   * @param redactor applied to each input before it is kept, or null to keep inputs as they are (the default)
+   */
+  public void setRedactor(Redactor redactor) {
+    this.redactor = redactor;
+  }
+}
@@ -0,0 +1,247 @@
+package com.moandjiezana.tent.text;
+
+import com.moandjiezana.tent.text.Extractor.Entity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Selects and highlights the parts of a long post that contain the most hits, so that only those are shown in search
+ * results.
+ * <p/>
+ * Each snippet is a window of about the requested length around the densest group of hits. Windows are moved to word
+ * boundaries when possible, and never cut through a hit, an extracted entity or a surrogate pair. A window may
+ * therefore be slightly shorter than requested, or longer when a single hit or an entity containing a hit is longer.
+ * The one exception is an entity that contains a hit as well as part of another hit or snippet: it is cut where
+ * taking it in whole would cut that hit or overlap that snippet. Only the text of each window is highlighted.
+ * <p/>
+ * Texts are plain text, and hits are offsets into them, as found by {@link HitMatcher}.
+ */
+public class SnippetGenerator {
+  /** Default marker of text left out before or after a snippet */
+  public static final String DEFAULT_ELLIPSIS = "…";
+
+  /** the highlighter applied to each snippet */
+  protected HitHighlighter highlighter;
+
+  /** the extractor of the entities that snippets mustn't cut */
+  protected Extractor extractor;
+
+  /** the current marker of text left out */
+  protected String ellipsis = DEFAULT_ELLIPSIS;
+
+  public SnippetGenerator() {
+    this(new HitHighlighter(), new Extractor());
+  }
+
+  /**
+   * @param highlighter applied to each snippet
+   * @param extractor of the entities snippets mustn't cut
+   */
+  public SnippetGenerator(HitHighlighter highlighter, Extractor extractor) {
+    this.highlighter = highlighter;
+    this.extractor = extractor;
+  }
+
+  /**
+   * @param text of the post
+   * @param hits A List of highlighting offsets (themselves lists of two elements)
+   * @param length of the snippet, in chars
+   * @return the highlighted window with the most hits, or the start of the text if there are none, with an ellipsis
+   *         on each side where text was left out
+   */
+  public String snippet(String text, List<List<Integer>> hits, int length) {
+    return snippets(text, hits, length, 1).get(0);
+  }
+
+  /**
+   * @param text of the post
+   * @param hits A List of highlighting offsets (themselves lists of two elements)
+   * @param length of each snippet, in chars
+   * @param maxSnippets maximum number of snippets
+   * @return the highlighted windows with the most hits, in the order they appear in the text. They don't overlap.
+   */
+  public List<String> snippets(String text, List<List<Integer>> hits, int length, int maxSnippets) {
+    if (length < 1 || maxSnippets < 1) {
+      throw new IllegalArgumentException("Length and number of snippets must be positive");
+    }
+    if (text.length() <= length) {
+      return Collections.singletonList(highlighter.highlight(text, hits));
+    }
+
+    int[][] sorted = sort(hits, text.length());
+    boolean[] shown = new boolean[sorted.length];
+    List<Entity> entities = extractor.extractEntitiesWithIndices(text);
+    List<int[]> windows = new ArrayList<int[]>();
+    while (windows.size() < maxSnippets) {
+      // The longest run of hits not shown yet that fits in a window
+      int best = -1;
+      int bestEnd = -1;
+      for (int i = 0; i < sorted.length; i++) {
+        if (shown[i]) {
+          continue;
+        }
+        int j = i + 1;
+        while (j < sorted.length && !shown[j] && sorted[j][1] - sorted[i][0] <= length) {
+          j++;
+        }
+        if (j - i > bestEnd - best) {
+          best = i;
+          bestEnd = j;
+        }
+      }
+
+      if (best == -1) {
+        if (windows.isEmpty()) {
+          windows.add(window(text, entities, 0, 0, 0, text.length(), length));
+        }
+        break;
+      }
+      Arrays.fill(shown, best, bestEnd, true);
+      int lower = best > 0 ? sorted[best - 1][1] : 0;
+      int upper = bestEnd < sorted.length ? sorted[bestEnd][0] : text.length();
+      for (int[] window : windows) {
+        if (window[1] <= sorted[best][0]) {
+          lower = Math.max(lower, window[1]);
+        } else {
+          upper = Math.min(upper, window[0]);
+        }
+      }
+      windows.add(window(text, entities, sorted[best][0], sorted[bestEnd - 1][1], lower, upper, length));
+    }
+
+    Collections.sort(windows, new Comparator<int[]>() {
+      @Override
+      public int compare(int[] a, int[] b) {
+        return a[0] < b[0] ? -1 : (a[0] == b[0] ? 0 : 1);
+      }
+    });
+    List<String> snippets = new ArrayList<String>(windows.size());
+    for (int[] window : windows) {
+      snippets.add(highlight(text, sorted, window[0], window[1]));
+    }
+    return snippets;
+  }
+
+  /**
+   * @return valid hits, sorted by start, with overlapping hits merged
+   */
+  private static int[][] sort(List<List<Integer>> hits, int textLength) {
+    List<int[]> sorted = new ArrayList<int[]>();
+    if (hits != null) {
+      for (List<Integer> hit : hits) {
+        if (hit.size() == 2 && hit.get(0) >= 0 && hit.get(0) < hit.get(1) && hit.get(1) <= textLength) {
+          sorted.add(new int[] { hit.get(0), hit.get(1) });
+        }
+      }
+    }
+    Collections.sort(sorted, new Comparator<int[]>() {
+      @Override
+      public int compare(int[] a, int[] b) {
+        return a[0] < b[0] ? -1 : (a[0] == b[0] ? 0 : 1);
+      }
+    });
+    List<int[]> merged = new ArrayList<int[]>(sorted.size());
+    for (int[] hit : sorted) {
+      int[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+      if (last != null && hit[0] < last[1]) {
+        last[1] = Math.max(last[1], hit[1]);
+      } else {
+        merged.add(hit);
+      }
+    }
+    return merged.toArray(new int[merged.size()][]);
+  }
+
+  /**
+   * @param first start of the first hit of the window
+   * @param last end of the last hit of the window
+   * @param lower lowest start, so as not to cut another hit or overlap another window
+   * @param upper highest end, for the same reasons
+   * @return the start and end of the window
+   */
+  private static int[] window(String text, List<Entity> entities, int first, int last, int lower, int upper,
+      int length) {
+    // Centre the hits, then shift the window back if it was cut short on the right
+    int slack = Math.max(0, length - (last - first));
+    int start = Math.max(lower, first - slack / 2);
+    int end = Math.min(upper, start + Math.max(length, last - first));
+    start = Math.max(lower, Math.min(start, end - length));
+
+    // Move inwards to word boundaries
+    if (start > 0 && !Character.isWhitespace(text.charAt(start - 1))) {
+      for (int i = start + 1; i <= first; i++) {
+        if (Character.isWhitespace(text.charAt(i - 1))) {
+          start = i;
+          break;
+        }
+      }
+    }
+    if (end < text.length() && !Character.isWhitespace(text.charAt(end))) {
+      for (int i = end - 1; i >= last; i--) {
+        if (Character.isWhitespace(text.charAt(i))) {
+          end = i;
+          break;
+        }
+      }
+    }
+
+    // Leave out entities cut by the window, or take them in whole if they contain hits, as far as the bounds allow
+    for (Entity entity : entities) {
+      if (entity.start < start && start < entity.end) {
+        start = entity.end <= first ? entity.end : Math.max(lower, entity.start);
+      }
+      if (entity.start < end && end < entity.end) {
+        end = entity.start >= last ? entity.start : Math.min(upper, entity.end);
+      }
+    }
+
+    if (start > 0 && start < text.length() && Character.isLowSurrogate(text.charAt(start))
+        && Character.isHighSurrogate(text.charAt(start - 1))) {
+      start++;
+    }
+    if (end > 0 && end < text.length() && Character.isLowSurrogate(text.charAt(end))
+        && Character.isHighSurrogate(text.charAt(end - 1))) {
+      end--;
+    }
+    return new int[] { start, end };
+  }
+
+  private String highlight(String text, int[][] hits, int start, int end) {
+    List<List<Integer>> windowHits = new ArrayList<List<Integer>>();
+    for (int[] hit : hits) {
+      if (hit[0] >= start && hit[1] <= end) {
+        windowHits.add(Arrays.asList(hit[0] - start, hit[1] - start));
+      }
+    }
+
+    StringBuilder snippet = new StringBuilder(end - start + ellipsis.length() * 2 + windowHits.size() * 10);
+    if (start > 0) {
+      snippet.append(ellipsis);
+    }
+    snippet.append(highlighter.highlight(text.substring(start, end), windowHits));
+    if (end < text.length()) {
+      snippet.append(ellipsis);
+    }
+    return snippet.toString();
+  }
+
+  /**
+   * Get the current marker of text left out before or after a snippet.
+   */
+  public String getEllipsis() {
+    return ellipsis;
+  }
+
+  /**
+   * Set the marker of text left out before or after a snippet.
+   *
+   * @param ellipsis marker, or an empty string for none
+   */
+  public void setEllipsis(String ellipsis) {
+    this.ellipsis = ellipsis;
+  }
+}
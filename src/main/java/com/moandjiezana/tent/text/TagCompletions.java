@@ -0,0 +1,282 @@
+package com.moandjiezana.tent.text;
+
+import com.moandjiezana.tent.text.Extractor.Entity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Suggests the most frequent #hashtags and ^mentions starting with a prefix, for autocompletion.
+ * <p/>
+ * Tags are counted as posts are added, by any number of threads. Completions are read from an immutable snapshot of
+ * the counts, which is rebuilt by the thread adding a post once the rebuild interval has elapsed, or by calling
+ * {@link #rebuild()}. Readers never lock and never see a snapshot being built, so tags added since the last rebuild
+ * aren't suggested yet.
+ * <p/>
+ * In a snapshot, tags are sorted, so those starting with a prefix form a range found by binary search, as in a trie.
+ * A tree of the most frequent tag of each part of the range then yields the top completions without looking at the
+ * rest of the range.
+ */
+public class TagCompletions {
+  public static final long DEFAULT_REBUILD_INTERVAL_MILLIS = 1000;
+
+  /**
+   * A suggested tag and the number of times it was seen.
+   */
+  public static class Completion {
+    private final String tag;
+    private final long count;
+
+    Completion(String tag, long count) {
+      this.tag = tag;
+      this.count = count;
+    }
+
+    /**
+     * @return the tag with its symbol, as it was first seen, e.g. "#TentDev"
+     */
+    public String getTag() {
+      return tag;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    @Override
+    public String toString() {
+      return tag + "=" + count;
+    }
+  }
+
+  /**
+   * The count of a tag, and how it was first written.
+   */
+  private static final class Term {
+    final String tag;
+    final AtomicLong count = new AtomicLong();
+
+    Term(String tag) {
+      this.tag = tag;
+    }
+  }
+
+  /**
+   * Tags sorted by case-folded term, with a tree of the most frequent tag of each range of terms.
+   */
+  private static final class Snapshot {
+    final String[] terms;
+    final String[] tags;
+    final long[] counts;
+    /** Leaves at [n, 2n) are tag indices. Each parent holds the most frequent of its children. */
+    final int[] tree;
+
+    Snapshot(Map<String, Term> entries) {
+      terms = entries.keySet().toArray(new String[entries.size()]);
+      Arrays.sort(terms);
+      int n = terms.length;
+      tags = new String[n];
+      counts = new long[n];
+      tree = new int[n * 2];
+      for (int i = 0; i < n; i++) {
+        Term term = entries.get(terms[i]);
+        tags[i] = term.tag;
+        counts[i] = term.count.get();
+        tree[n + i] = i;
+      }
+      for (int i = n - 1; i > 0; i--) {
+        tree[i] = better(tree[i * 2], tree[i * 2 + 1]);
+      }
+    }
+
+    int better(int a, int b) {
+      // Ties go to the first term alphabetically
+      return counts[b] > counts[a] || (counts[b] == counts[a] && b < a) ? b : a;
+    }
+
+    /**
+     * @return the index of the most frequent tag in [from, to)
+     */
+    int best(int from, int to) {
+      int n = terms.length;
+      int best = from;
+      for (int l = from + n, r = to + n; l < r; l >>= 1, r >>= 1) {
+        if ((l & 1) == 1) {
+          best = better(best, tree[l++]);
+        }
+        if ((r & 1) == 1) {
+          best = better(best, tree[--r]);
+        }
+      }
+      return best;
+    }
+
+    /**
+     * @return the index of the first term not lower than the prefix
+     */
+    int lowerBound(String prefix) {
+      int low = 0;
+      int high = terms.length;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (terms[middle].compareTo(prefix) < 0) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+
+    /**
+     * @return the index of the first term after those starting with the prefix
+     */
+    int upperBound(String prefix, int from) {
+      int low = from;
+      int high = terms.length;
+      while (low < high) {
+        int middle = (low + high) >>> 1;
+        if (terms[middle].startsWith(prefix)) {
+          low = middle + 1;
+        } else {
+          high = middle;
+        }
+      }
+      return low;
+    }
+  }
+
+  private final ConcurrentMap<String, Term> terms = new ConcurrentHashMap<String, Term>();
+  private final Extractor extractor;
+  private final long rebuildIntervalNanos;
+  private final AtomicLong nextRebuild;
+  private volatile Snapshot snapshot = new Snapshot(Collections.<String, Term> emptyMap());
+
+  /**
+   * Uses a new Extractor and rebuilds snapshots every {@link #DEFAULT_REBUILD_INTERVAL_MILLIS}.
+   */
+  public TagCompletions() {
+    this(new Extractor(), DEFAULT_REBUILD_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @param extractor used to extract tags from posts. It is shared by every thread adding posts.
+   * @param rebuildInterval minimum time between snapshots rebuilt while adding posts
+   */
+  public TagCompletions(Extractor extractor, long rebuildInterval, TimeUnit unit) {
+    this.extractor = extractor;
+    this.rebuildIntervalNanos = unit.toNanos(rebuildInterval);
+    this.nextRebuild = new AtomicLong(System.nanoTime() + rebuildIntervalNanos);
+  }
+
+  /**
+   * Counts the hashtags and mentions of a post. Those that are part of URLs are ignored.
+   */
+  public void add(String text) {
+    add(extractor.extractEntitiesWithIndices(text));
+  }
+
+  /**
+   * Counts the hashtags and mentions among entities already extracted from a post. Other entities are ignored.
+   */
+  public void add(List<Entity> entities) {
+    for (Entity entity : entities) {
+      char symbol = entity.type == Entity.Type.HASHTAG ? '#' : (entity.type == Entity.Type.MENTION ? '^' : 0);
+      if (symbol != 0) {
+        String term = symbol + fold(entity.value);
+        Term counted = terms.get(term);
+        if (counted == null) {
+          Term newTerm = new Term(symbol + entity.value);
+          counted = terms.putIfAbsent(term, newTerm);
+          if (counted == null) {
+            counted = newTerm;
+          }
+        }
+        counted.count.incrementAndGet();
+      }
+    }
+
+    long now = System.nanoTime();
+    long rebuildAt = nextRebuild.get();
+    if (now - rebuildAt >= 0 && nextRebuild.compareAndSet(rebuildAt, now + rebuildIntervalNanos)) {
+      rebuild();
+    }
+  }
+
+  private static String fold(String value) {
+    return value.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * Publishes a snapshot of the counts so far.
+   */
+  public void rebuild() {
+    snapshot = new Snapshot(terms);
+  }
+
+  /**
+   * @param prefix of a tag, with its symbol, e.g. "#te" or "^al". A symbol alone matches all tags of its kind.
+   * @param limit maximum number of completions
+   * @return the most frequent tags starting with the prefix, most frequent first, as of the last snapshot
+   */
+  public List<Completion> complete(String prefix, int limit) {
+    if (prefix.isEmpty()) {
+      throw new IllegalArgumentException("Prefixes must start with # or ^");
+    }
+    char symbol = prefix.charAt(0);
+    if (symbol == '＃') {
+      // Full-width hashtag sign
+      symbol = '#';
+    }
+    if (symbol != '#' && symbol != '^') {
+      throw new IllegalArgumentException("Prefixes must start with # or ^: " + prefix);
+    }
+    String folded = symbol + fold(prefix.substring(1));
+
+    final Snapshot current = snapshot;
+    int from = current.lowerBound(folded);
+    int to = current.upperBound(folded, from);
+    List<Completion> completions = new ArrayList<Completion>(Math.max(0, Math.min(limit, to - from)));
+    if (from == to || limit <= 0) {
+      return completions;
+    }
+
+    // Each range holds its most frequent tag, which is the best of the range and of both halves left once it's taken
+    PriorityQueue<int[]> ranges = new PriorityQueue<int[]>(Math.min(limit, to - from) + 1, new Comparator<int[]>() {
+      @Override
+      public int compare(int[] a, int[] b) {
+        return a[2] == b[2] ? 0 : (current.better(a[2], b[2]) == a[2] ? -1 : 1);
+      }
+    });
+    ranges.add(new int[] { from, to, current.best(from, to) });
+    while (completions.size() < limit && !ranges.isEmpty()) {
+      int[] range = ranges.poll();
+      int best = range[2];
+      completions.add(new Completion(current.tags[best], current.counts[best]));
+      if (range[0] < best) {
+        ranges.add(new int[] { range[0], best, current.best(range[0], best) });
+      }
+      if (best + 1 < range[1]) {
+        ranges.add(new int[] { best + 1, range[1], current.best(best + 1, range[1]) });
+      }
+    }
+    return completions;
+  }
+
+  /**
+   * @return the number of distinct tags in the last snapshot
+   */
+  public int getTagCount() {
+    return snapshot.terms.length;
+  }
+}
@@ -0,0 +1,313 @@
+package com.moandjiezana.tent.text;
+
+import com.moandjiezana.tent.text.Extractor.Entity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * An in-memory inverted index from #hashtags, ^mentions and $cashtags to the ids of the posts that contain them.
+ * <p/>
+ * Tags are case-folded, so #Tent and #tent are the same tag. Each tag's post ids are kept sorted and compressed as
+ * variable-length deltas, usually one or two bytes per post. Posts can be indexed by any number of threads at once,
+ * in any order, although indexing in ascending order of id is cheapest: ids then only need appending.
+ * <p/>
+ * Tags in queries are written with their symbol, e.g. "#tent", "^alice" or "$AAPL".
+ */
+public class TagIndex {
+
+  /**
+   * The sorted, compressed ids of the posts containing one tag. Ids that arrive out of order are kept in a small
+   * unsorted buffer, which is merged into the compressed ids when it is full or when the list is read.
+   */
+  private static final class PostingList {
+    private static final int MAX_PENDING = 32;
+
+    private byte[] compressed = new byte[4];
+    private int length = 0;
+    private int count = 0;
+    private long last = -1;
+    private long[] pending = null;
+    private int pendingCount = 0;
+
+    synchronized void add(long postId) {
+      if (pendingCount == 0 && postId >= last) {
+        append(postId);
+        return;
+      }
+      if (pending == null) {
+        pending = new long[4];
+      } else if (pendingCount == pending.length) {
+        if (pendingCount == MAX_PENDING) {
+          flush();
+        } else {
+          pending = Arrays.copyOf(pending, pending.length * 2);
+        }
+      }
+      pending[pendingCount++] = postId;
+    }
+
+    synchronized long[] toArray() {
+      flush();
+      return decode();
+    }
+
+    private long[] decode() {
+      long[] postIds = new long[count];
+      int position = 0;
+      long postId = 0;
+      for (int i = 0; i < count; i++) {
+        long delta = 0;
+        for (int shift = 0;; shift += 7) {
+          byte b = compressed[position++];
+          delta |= (long) (b & 0x7f) << shift;
+          if (b >= 0) {
+            break;
+          }
+        }
+        postId = i == 0 ? delta : postId + delta;
+        postIds[i] = postId;
+      }
+      return postIds;
+    }
+
+    synchronized int sizeInBytes() {
+      return compressed.length + (pending == null ? 0 : pending.length * 8);
+    }
+
+    private void flush() {
+      if (pendingCount == 0) {
+        return;
+      }
+      Arrays.sort(pending, 0, pendingCount);
+      if (pending[0] >= last) {
+        for (int i = 0; i < pendingCount; i++) {
+          append(pending[i]);
+        }
+      } else {
+        long[] existing = decode();
+        length = 0;
+        count = 0;
+        last = -1;
+        int i = 0;
+        int j = 0;
+        while (i < existing.length || j < pendingCount) {
+          append(j == pendingCount || (i < existing.length && existing[i] < pending[j]) ? existing[i++] : pending[j++]);
+        }
+      }
+      pendingCount = 0;
+    }
+
+    /**
+     * @param postId not lower than the last one appended. Duplicates are ignored.
+     */
+    private void append(long postId) {
+      if (postId == last) {
+        return;
+      }
+      long value = count == 0 ? postId : postId - last;
+      if (length + 10 > compressed.length) {
+        compressed = Arrays.copyOf(compressed, Math.max(length + 10, compressed.length * 2));
+      }
+      while ((value & ~0x7fL) != 0) {
+        compressed[length++] = (byte) ((value & 0x7f) | 0x80);
+        value >>>= 7;
+      }
+      compressed[length++] = (byte) value;
+      count++;
+      last = postId;
+    }
+  }
+
+  private static final long[] NO_POSTS = new long[0];
+
+  private final ConcurrentMap<String, PostingList> postingLists = new ConcurrentHashMap<String, PostingList>();
+  private final Extractor extractor;
+
+  public TagIndex() {
+    this(new Extractor());
+  }
+
+  /**
+   * @param extractor used to extract tags from posts. It is shared by every thread indexing posts.
+   */
+  public TagIndex(Extractor extractor) {
+    this.extractor = extractor;
+  }
+
+  /**
+   * Indexes the hashtags, mentions and cashtags of a post. Hashtags and mentions that are part of URLs are ignored.
+   *
+   * @param postId a non-negative id
+   * @param text of the post
+   */
+  public void index(long postId, String text) {
+    index(postId, extractor.extractEntitiesWithIndices(text));
+  }
+
+  /**
+   * Indexes the hashtags, mentions and cashtags among entities already extracted from a post. URLs are ignored.
+   *
+   * @param postId a non-negative id
+   * @param entities extracted from the post
+   */
+  public void index(long postId, List<Entity> entities) {
+    if (postId < 0) {
+      throw new IllegalArgumentException("Post ids must not be negative: " + postId);
+    }
+    for (Entity entity : entities) {
+      char symbol = symbol(entity.type);
+      if (symbol != 0) {
+        String term = symbol + fold(entity.value);
+        PostingList postingList = postingLists.get(term);
+        if (postingList == null) {
+          PostingList newPostingList = new PostingList();
+          postingList = postingLists.putIfAbsent(term, newPostingList);
+          if (postingList == null) {
+            postingList = newPostingList;
+          }
+        }
+        postingList.add(postId);
+      }
+    }
+  }
+
+  private static char symbol(Entity.Type type) {
+    switch (type) {
+      case HASHTAG:
+        return '#';
+      case MENTION:
+        return '^';
+      case CASHTAG:
+        return '$';
+      default:
+        return 0;
+    }
+  }
+
+  private static String fold(String value) {
+    return value.toLowerCase(Locale.ROOT);
+  }
+
+  private static String term(String tag) {
+    if (tag.length() < 2) {
+      throw new IllegalArgumentException("Not a tag: " + tag);
+    }
+    char symbol = tag.charAt(0);
+    if (symbol == '＃') {
+      // Full-width hashtag sign
+      symbol = '#';
+    }
+    if (symbol != '#' && symbol != '^' && symbol != '$') {
+      throw new IllegalArgumentException("Tags must start with #, ^ or $: " + tag);
+    }
+    return symbol + fold(tag.substring(1));
+  }
+
+  /**
+   * @param tag with its symbol, e.g. "#tent"
+   * @return ids of the posts containing the tag, in ascending order
+   */
+  public long[] getPosts(String tag) {
+    PostingList postingList = postingLists.get(term(tag));
+    return postingList == null ? NO_POSTS : postingList.toArray();
+  }
+
+  /**
+   * @param tags with their symbols, e.g. "#tent"
+   * @return ids of the posts containing all of the tags, in ascending order
+   */
+  public long[] and(String... tags) {
+    if (tags.length == 0) {
+      return NO_POSTS;
+    }
+    long[][] postIds = new long[tags.length][];
+    for (int i = 0; i < tags.length; i++) {
+      postIds[i] = getPosts(tags[i]);
+    }
+    // Intersect the shortest lists first, so that the result shrinks as early as possible
+    Arrays.sort(postIds, new Comparator<long[]>() {
+      @Override
+      public int compare(long[] a, long[] b) {
+        return a.length < b.length ? -1 : (a.length == b.length ? 0 : 1);
+      }
+    });
+
+    long[] result = postIds[0];
+    for (int i = 1; i < postIds.length && result.length > 0; i++) {
+      long[] other = postIds[i];
+      long[] intersection = new long[result.length];
+      int count = 0;
+      int from = 0;
+      for (long postId : result) {
+        int found = Arrays.binarySearch(other, from, other.length, postId);
+        if (found >= 0) {
+          intersection[count++] = postId;
+          from = found + 1;
+        } else {
+          from = -found - 1;
+        }
+      }
+      result = Arrays.copyOf(intersection, count);
+    }
+    return result;
+  }
+
+  /**
+   * @param tags with their symbols, e.g. "#tent"
+   * @return ids of the posts containing any of the tags, in ascending order
+   */
+  public long[] or(String... tags) {
+    long[] result = NO_POSTS;
+    for (String tag : tags) {
+      long[] other = getPosts(tag);
+      long[] union = new long[result.length + other.length];
+      int count = 0;
+      int i = 0;
+      int j = 0;
+      while (i < result.length || j < other.length) {
+        long postId;
+        if (j == other.length || (i < result.length && result[i] <= other[j])) {
+          postId = result[i++];
+        } else {
+          postId = other[j++];
+        }
+        if (count == 0 || union[count - 1] != postId) {
+          union[count++] = postId;
+        }
+      }
+      result = Arrays.copyOf(union, count);
+    }
+    return result;
+  }
+
+  /**
+   * @return the number of distinct tags indexed
+   */
+  public int getTagCount() {
+    return postingLists.size();
+  }
+
+  /**
+   * @return the distinct tags indexed, case-folded and with their symbols
+   */
+  public List<String> getTags() {
+    return new ArrayList<String>(postingLists.keySet());
+  }
+
+  /**
+   * @return approximate memory used by posting lists, in bytes
+   */
+  public long getPostingSize() {
+    long size = 0;
+    for (PostingList postingList : postingLists.values()) {
+      size += postingList.sizeInBytes();
+    }
+    return size;
+  }
+}
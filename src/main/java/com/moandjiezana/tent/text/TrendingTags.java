@@ -0,0 +1,283 @@
+package com.moandjiezana.tent.text;
+
+import com.moandjiezana.tent.text.Extractor.Entity;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Tracks the most frequent #hashtags and $cashtags in a stream of posts, in fixed memory.
+ * <p/>
+ * Tags are counted approximately in a Count-Min sketch, which may overestimate but never underestimates a count.
+ * The tags with the highest counts are kept in a bounded set of candidates. Counts decay by half every half-life, so
+ * that trends reflect recent posts.
+ * <p/>
+ * Tags are case-folded, and are hashed straight from the text of the post: a String is only created for a tag when it
+ * becomes a candidate. Counters are updated without locking, and candidates are split into independently locked
+ * stripes, so any number of threads can offer posts at once.
+ */
+public class TrendingTags {
+  public static final int DEFAULT_WIDTH = 1 << 16;
+  public static final int DEFAULT_DEPTH = 4;
+  public static final long DEFAULT_HALF_LIFE_MILLIS = TimeUnit.HOURS.toMillis(1);
+
+  private static final int STRIPES = 16;
+
+  /**
+   * A tag and its estimated, decayed count.
+   */
+  public static class Trend {
+    private final String tag;
+    private final long count;
+
+    Trend(String tag, long count) {
+      this.tag = tag;
+      this.count = count;
+    }
+
+    /**
+     * @return the case-folded tag, with its symbol, e.g. "#tentdev" or "$aapl"
+     */
+    public String getTag() {
+      return tag;
+    }
+
+    public long getCount() {
+      return count;
+    }
+
+    @Override
+    public String toString() {
+      return tag + "=" + count;
+    }
+  }
+
+  /**
+   * Candidates whose hashes fall in one stripe.
+   */
+  private static final class Stripe {
+    final long[] hashes;
+    final String[] tags;
+    final long[] counts;
+    int size = 0;
+    /** Lowest count of a candidate once the stripe is full. Read without locking to skip most offers. */
+    volatile long minimum = 0;
+
+    Stripe(int capacity) {
+      hashes = new long[capacity];
+      tags = new String[capacity];
+      counts = new long[capacity];
+    }
+
+    synchronized void offer(long hash, char symbol, String text, int start, int end, long count) {
+      int lowest = 0;
+      for (int i = 0; i < size; i++) {
+        if (hashes[i] == hash && matches(tags[i], symbol, text, start, end)) {
+          counts[i] = Math.max(counts[i], count);
+          updateMinimum();
+          return;
+        }
+        if (counts[i] < counts[lowest]) {
+          lowest = i;
+        }
+      }
+
+      if (size < tags.length) {
+        lowest = size++;
+      } else if (count <= counts[lowest]) {
+        return;
+      }
+      hashes[lowest] = hash;
+      tags[lowest] = fold(symbol, text, start, end);
+      counts[lowest] = count;
+      updateMinimum();
+    }
+
+    private void updateMinimum() {
+      if (size < tags.length) {
+        return;
+      }
+      long lowest = Long.MAX_VALUE;
+      for (int i = 0; i < size; i++) {
+        lowest = Math.min(lowest, counts[i]);
+      }
+      minimum = lowest;
+    }
+
+    synchronized void decay() {
+      for (int i = 0; i < size; i++) {
+        counts[i] >>= 1;
+      }
+      updateMinimum();
+    }
+
+    synchronized void addTo(List<Trend> trends) {
+      for (int i = 0; i < size; i++) {
+        trends.add(new Trend(tags[i], counts[i]));
+      }
+    }
+  }
+
+  private final Extractor extractor = new Extractor();
+  private final int topK;
+  private final int depth;
+  private final int widthMask;
+  private final AtomicLongArray counters;
+  private final Stripe[] stripes = new Stripe[STRIPES];
+  private final long halfLifeNanos;
+  private final AtomicLong nextDecay;
+
+  /**
+   * Uses a sketch of {@link #DEFAULT_DEPTH} rows of {@link #DEFAULT_WIDTH} counters, decaying every
+   * {@link #DEFAULT_HALF_LIFE_MILLIS}.
+   *
+   * @param topK number of trends tracked
+   */
+  public TrendingTags(int topK) {
+    this(topK, DEFAULT_WIDTH, DEFAULT_DEPTH, DEFAULT_HALF_LIFE_MILLIS, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * @param topK number of trends tracked
+   * @param width counters per row of the sketch, a power of two. Wider sketches overestimate less.
+   * @param depth rows of the sketch. Deeper sketches overestimate less often.
+   * @param halfLife time after which counts are halved
+   */
+  public TrendingTags(int topK, int width, int depth, long halfLife, TimeUnit unit) {
+    if (topK < 1 || depth < 1 || width < 1 || Integer.bitCount(width) != 1) {
+      throw new IllegalArgumentException("Top k and depth must be positive and width must be a power of two");
+    }
+    this.topK = topK;
+    this.depth = depth;
+    this.widthMask = width - 1;
+    this.counters = new AtomicLongArray(width * depth);
+    for (int i = 0; i < STRIPES; i++) {
+      // Any stripe may hold all of the top tags
+      stripes[i] = new Stripe(topK);
+    }
+    this.halfLifeNanos = unit.toNanos(halfLife);
+    this.nextDecay = new AtomicLong(System.nanoTime() + halfLifeNanos);
+  }
+
+  /**
+   * Counts the hashtags and cashtags of a post.
+   */
+  public void offer(String text) {
+    long now = System.nanoTime();
+    long decayAt = nextDecay.get();
+    if (now - decayAt >= 0 && nextDecay.compareAndSet(decayAt, now + halfLifeNanos)) {
+      decay();
+    }
+
+    for (Entity hashtag : extractor.extractHashtagsWithIndices(text)) {
+      count('#', text, hashtag.start + 1, hashtag.end);
+    }
+    for (Entity cashtag : extractor.extractCashtagsWithIndices(text)) {
+      count('$', text, cashtag.start + 1, cashtag.end);
+    }
+  }
+
+  private void count(char symbol, String text, int start, int end) {
+    long hash = hash(symbol, text, start, end);
+    long estimate = Long.MAX_VALUE;
+    for (int row = 0; row < depth; row++) {
+      estimate = Math.min(estimate, counters.incrementAndGet(index(hash, row)));
+    }
+
+    Stripe stripe = stripes[(int) (hash >>> 60) & (STRIPES - 1)];
+    if (estimate > stripe.minimum) {
+      stripe.offer(hash, symbol, text, start, end, estimate);
+    }
+  }
+
+  private int index(long hash, int row) {
+    // Derives a hash per row from two halves of one hash
+    int combined = (int) hash + row * (int) (hash >>> 32);
+    combined ^= combined >>> 16;
+    return row * (widthMask + 1) + (combined & widthMask);
+  }
+
+  /**
+   * 64-bit FNV-1a of the symbol and the case-folded characters of the tag.
+   */
+  private static long hash(char symbol, CharSequence text, int start, int end) {
+    long hash = 0xcbf29ce484222325L;
+    hash = (hash ^ symbol) * 0x100000001b3L;
+    for (int i = start; i < end; i++) {
+      hash = (hash ^ Character.toLowerCase(text.charAt(i))) * 0x100000001b3L;
+    }
+    // Mixes the high bits, which select the stripe
+    return hash ^ (hash >>> 29);
+  }
+
+  private static String fold(char symbol, String text, int start, int end) {
+    StringBuilder tag = new StringBuilder(end - start + 1).append(symbol);
+    for (int i = start; i < end; i++) {
+      tag.append(Character.toLowerCase(text.charAt(i)));
+    }
+    return tag.toString();
+  }
+
+  private static boolean matches(String tag, char symbol, String text, int start, int end) {
+    if (tag.length() != end - start + 1 || tag.charAt(0) != symbol) {
+      return false;
+    }
+    for (int i = start; i < end; i++) {
+      if (tag.charAt(i - start + 1) != Character.toLowerCase(text.charAt(i))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @param tag with its symbol, e.g. "#tentdev" or "$AAPL"
+   * @return the estimated, decayed count of the tag
+   */
+  public long estimate(String tag) {
+    long hash = hash(tag.charAt(0), tag, 1, tag.length());
+    long estimate = Long.MAX_VALUE;
+    for (int row = 0; row < depth; row++) {
+      estimate = Math.min(estimate, counters.get(index(hash, row)));
+    }
+    return estimate;
+  }
+
+  /**
+   * @return the most frequent tags, most frequent first
+   */
+  public List<Trend> getTop() {
+    List<Trend> trends = new ArrayList<Trend>();
+    for (Stripe stripe : stripes) {
+      stripe.addTo(trends);
+    }
+    Collections.sort(trends, new Comparator<Trend>() {
+      @Override
+      public int compare(Trend a, Trend b) {
+        return a.count > b.count ? -1 : (a.count == b.count ? a.tag.compareTo(b.tag) : 1);
+      }
+    });
+    return trends.size() > topK ? new ArrayList<Trend>(trends.subList(0, topK)) : trends;
+  }
+
+  /**
+   * Halves every count. Called automatically once per half-life. Posts offered while counts decay may be counted
+   * before or after decaying.
+   */
+  public void decay() {
+    for (int i = 0; i < counters.length(); i++) {
+      long count;
+      do {
+        count = counters.get(i);
+      } while (count != 0 && !counters.compareAndSet(i, count, count >> 1));
+    }
+    for (Stripe stripe : stripes) {
+      stripe.decay();
+    }
+  }
+}
@@ -1,6 +1,7 @@
 package com.moandjiezana.tent.text;
 
 import java.text.Normalizer;
+import java.util.concurrent.TimeUnit;
 
 /**
  * A class for validating Tweet texts.
@@ -12,8 +13,13 @@ public class Validator {
   protected int shortUrlLengthHttps = 21;
 
   private Extractor extractor = new Extractor();
+  private Metrics metrics = null;
+  private SlowCall.Listener slowCallListener = null;
+  private long slowCallThresholdNanos;
 
   public int getTweetLength(String text) {
+    long start = metrics == null && slowCallListener == null ? 0 : System.nanoTime();
+    String input = text;
     text = Normalizer.normalize(text, Normalizer.Form.NFC);
     int length = text.codePointCount(0, text.length());
 
@@ -22,6 +28,15 @@ public class Validator {
       length += urlEntity.value.toLowerCase().startsWith("https://") ? shortUrlLengthHttps : shortUrlLength;
     }
 
+    if (metrics != null || slowCallListener != null) {
+      long nanos = System.nanoTime() - start;
+      if (metrics != null) {
+        metrics.validated(input.length(), nanos);
+      }
+      if (slowCallListener != null && nanos >= slowCallThresholdNanos) {
+        slowCallListener.slowCall(new SlowCall(SlowCall.Operation.VALIDATION, null, input, 0, nanos));
+      }
+    }
     return length;
   }
 
@@ -56,4 +71,25 @@ public class Validator {
   public void setShortUrlLengthHttps(int shortUrlLengthHttps) {
     this.shortUrlLengthHttps = shortUrlLengthHttps;
   }
+
+  /**
+   * Record measurements of validation, and of the URL extraction it requires.
+   *
+   * @param metrics receiver of measurements, or null to record none (the default)
+   */
+  public void setMetrics(Metrics metrics) {
+    this.metrics = metrics;
+    extractor.setMetrics(metrics);
+  }
+
+  /**
+   * Report each validation, and each URL extraction it requires, that takes at least the given time.
+   *
+   * @param listener receiver of slow calls, or null to report none (the default)
+   */
+  public void setSlowCallListener(SlowCall.Listener listener, long threshold, TimeUnit unit) {
+    this.slowCallListener = listener;
+    this.slowCallThresholdNanos = unit.toNanos(threshold);
+    extractor.setSlowCallListener(listener, threshold, unit);
+  }
 }
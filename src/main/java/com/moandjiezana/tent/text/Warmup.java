@@ -0,0 +1,95 @@
+package com.moandjiezana.tent.text;
+
+import java.lang.management.CompilationMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs extraction, auto-linking, validation and highlighting over a synthetic corpus so that their hot paths are
+ * compiled by the JIT before real traffic arrives. Call it before marking a service as ready.
+ */
+public class Warmup {
+  /** Default maximum time spent warming up */
+  public static final long DEFAULT_TIME_BUDGET_MILLIS = 10000;
+
+  /** Rounds without any JIT compilation after which compilation is considered settled */
+  private static final int SETTLED_ROUNDS = 5;
+  /** Every post is processed this many times per round */
+  private static final int POSTS_PER_ROUND = 200;
+
+  private static final String[] CORPUS = {
+    "Just setting up my tent",
+    "^alice ^bob have you seen #tentdev today?",
+    "RT ^carol: Check out http://example.com/path/to/page?query=1&other=2 #links",
+    "www.example.org and https://t.co/abcdef1234 and http://en.wikipedia.org/wiki/Primer_(film).",
+    "$AAPL up, $BRK.A flat, $goog_a down. ^trader/list-slug knows why.",
+    "#日本語ハッシュタグ ＃ハッシュタグ #café #Ċaoiṁín ^user_name",
+    "Long post with <b>markup</b> & \"quotes\" and 'apostrophes' ^someone #tag1 #tag2 #tag3 http://a.co/x",
+    "עברית #עברית ^rtl العربية",
+    "Emoji 😂 and accents é in a post with ^mention and #hashtag",
+    "Nothing to see here, just a plain sentence without any entities at all.",
+  };
+
+  private static final List<List<Integer>> HITS = Arrays.asList(Arrays.asList(0, 4), Arrays.asList(10, 14));
+
+  /** Keeps results reachable so the JIT can't discard the work. */
+  private static volatile int sink;
+
+  /**
+   * Warm up for at most {@link #DEFAULT_TIME_BUDGET_MILLIS}.
+   *
+   * @return the number of rounds run
+   */
+  public static int warmup() {
+    return warmup(DEFAULT_TIME_BUDGET_MILLIS);
+  }
+
+  /**
+   * Warm up until JIT compilation settles or the time budget runs out, whichever comes first. If the JVM doesn't report
+   * compilation time, the whole budget is used.
+   *
+   * @param timeBudgetMillis maximum time to spend warming up
+   * @return the number of rounds run
+   */
+  public static int warmup(long timeBudgetMillis) {
+    Extractor extractor = new Extractor();
+    Autolink autolink = new Autolink();
+    Validator validator = new Validator();
+    HitHighlighter hitHighlighter = new HitHighlighter();
+
+    CompilationMXBean compilation = ManagementFactory.getCompilationMXBean();
+    boolean monitorCompilation = compilation != null && compilation.isCompilationTimeMonitoringSupported();
+    long compilationTime = monitorCompilation ? compilation.getTotalCompilationTime() : 0;
+
+    long deadline = System.currentTimeMillis() + timeBudgetMillis;
+    int rounds = 0;
+    int settledRounds = 0;
+    do {
+      int result = 0;
+      for (int i = 0; i < POSTS_PER_ROUND; i++) {
+        String post = CORPUS[i % CORPUS.length];
+        result += extractor.extractURLsWithIndices(post).size();
+        result += extractor.extractHashtagsWithIndices(post).size();
+        result += extractor.extractMentionsOrListsWithIndices(post).size();
+        result += extractor.extractCashtagsWithIndices(post).size();
+        result += extractor.extractEntitiesWithIndices(post).size();
+        result += extractor.extractReplyScreenname(post) == null ? 0 : 1;
+        result += autolink.autoLink(post).length();
+        result += validator.getTweetLength(post);
+        result += validator.isValidTweet(post) ? 1 : 0;
+        result += hitHighlighter.highlight(post, HITS).length();
+      }
+      sink += result;
+      rounds++;
+
+      if (monitorCompilation) {
+        long newCompilationTime = compilation.getTotalCompilationTime();
+        settledRounds = newCompilationTime == compilationTime ? settledRounds + 1 : 0;
+        compilationTime = newCompilationTime;
+      }
+    } while (settledRounds < SETTLED_ROUNDS && System.currentTimeMillis() < deadline);
+
+    return rounds;
+  }
+}
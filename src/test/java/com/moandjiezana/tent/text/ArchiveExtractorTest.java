@@ -0,0 +1,113 @@
+package com.moandjiezana.tent.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ArchiveExtractorTest {
+  private File archive;
+  private File output;
+
+  @Before
+  public void setUp() throws Exception {
+    archive = File.createTempFile("archive", ".txt");
+    output = File.createTempFile("entities", ".txt");
+  }
+
+  @After
+  public void tearDown() {
+    archive.delete();
+    output.delete();
+  }
+
+  private void write(String content) throws Exception {
+    Writer writer = new OutputStreamWriter(new FileOutputStream(archive), "UTF-8");
+    writer.write(content);
+    writer.close();
+  }
+
+  private List<String> readOutput() throws Exception {
+    BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(output), "UTF-8"));
+    List<String> lines = new ArrayList<String>();
+    String line;
+    while ((line = reader.readLine()) != null) {
+      lines.add(line);
+    }
+    reader.close();
+    return lines;
+  }
+
+  @Test
+  public void extractsEachPost() throws Exception {
+    write("^alice #tent\r\nno entities\n\n日本語 #日本語\nhttp://example.com $AAPL");
+    ArchiveExtractor.Result result = new ArchiveExtractor().extract(archive, output);
+
+    assertEquals(4, result.getPosts());
+    assertEquals(5, result.getEntities());
+    List<String> lines = readOutput();
+    assertEquals(3, lines.size());
+    assertEquals("0\tMENTION:0:6\tHASHTAG:7:12", lines.get(0));
+    // 日本語 is 9 bytes in UTF-8 but 3 chars
+    assertEquals("27\tHASHTAG:4:8", lines.get(1));
+    assertEquals("48\tURL:0:18\tCASHTAG:19:24", lines.get(2));
+  }
+
+  @Test
+  public void decodesLikeStrings() throws Exception {
+    StringBuilder longPost = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      longPost.append("日本 ");
+    }
+    longPost.append("#end");
+    byte[] malformed = { '#', 'a', (byte) 0xff, ' ', '#', 'b', '\n' };
+    FileOutputStream out = new FileOutputStream(archive);
+    out.write(malformed);
+    out.write(longPost.toString().getBytes("UTF-8"));
+    out.close();
+
+    new ArchiveExtractor().extract(archive, output);
+
+    List<String> lines = readOutput();
+    assertEquals("0\tHASHTAG:0:2\tHASHTAG:4:6", lines.get(0));
+    assertEquals("7\tHASHTAG:3000:3004", lines.get(1));
+  }
+
+  @Test
+  public void splitsSegmentsOnLineBoundaries() throws Exception {
+    CorpusGenerator generator = new CorpusGenerator(7);
+    StringBuilder content = new StringBuilder();
+    Extractor extractor = new Extractor();
+    int posts = 500;
+    long entities = 0;
+    for (int i = 0; i < posts; i++) {
+      String post = generator.generate(CorpusGenerator.Shape.LONG_FORM, 20 + i % 200).replace('\n', ' ');
+      entities += extractor.extractEntitiesWithIndices(post).size();
+      content.append(post).append('\n');
+    }
+    write(content.toString());
+
+    ArchiveExtractor.Result result = new ArchiveExtractor(extractor, 3, 1000).extract(archive, output);
+
+    assertEquals(posts, result.getPosts());
+    assertEquals(entities, result.getEntities());
+    long previousOffset = -1;
+    for (String line : readOutput()) {
+      long offset = Long.parseLong(line.substring(0, line.indexOf('\t')));
+      assertTrue(offset > previousOffset);
+      previousOffset = offset;
+    }
+  }
+}
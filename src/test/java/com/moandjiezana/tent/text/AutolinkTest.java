@@ -4,12 +4,21 @@ package com.moandjiezana.tent.text;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import com.moandjiezana.tent.text.Extractor.Entity;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 import org.junit.Before;
@@ -31,6 +40,43 @@ public class AutolinkTest {
     assertAutolink(expected, linker.autoLinkHashtags(tweet));
   }
 
+  @Test
+  public void autoLinkEncodedEntities() {
+    String text = "^alice ^bob/list #日本語 $AAPL http://example.com <b>";
+    byte[] encoded = linker.encodeEntities(text);
+
+    assertEquals(linker.autoLink(text), linker.autoLinkEntities(text, encoded));
+    assertEquals(linker.autoLink(text), linker.autoLinkEntities(linker.escapeBrackets(text), encoded));
+  }
+
+  @Test
+  public void autoLinkEncodedEntitiesEscapesText() {
+    String text = "<script>alert(1)</script> #tag";
+
+    String linked = linker.autoLinkEntities(text, linker.encodeEntities(text));
+
+    assertEquals(linker.autoLink(text), linked);
+    assertFalse(linked, linked.contains("<script>"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void autoLinkEncodedEntitiesOfAnotherText() {
+    String text = "some text with a #hashtag";
+    byte[] encoded = EntityCodec.encode(text, new Extractor().extractEntitiesWithIndices(text));
+
+    linker.autoLinkEntities("a #hashtag", encoded);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void autoLinkEncodedEntitiesWithTooLargeCount() {
+    linker.autoLinkEntities("#tag", new byte[] { 1, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07 });
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void autoLinkEncodedEntitiesWithValueOutsideOfEntity() {
+    linker.autoLinkEntities("#tag", new byte[] { 1, 1, 1, 0, 2, 0, 4 });
+  }
+
   @Test
   public void noFollowDisabled() {
     linker.setNoFollow(false);
@@ -90,6 +136,26 @@ public class AutolinkTest {
     assertAutolink(expected, linker.autoLinkURLs(tweet));
   }
 
+  @Test
+  public void escapesAttributes() {
+    linker.setNoFollow(false);
+    linker.setLinkAttributeModifier(new Autolink.LinkAttributeModifier() {
+      public void modify(Entity entity, Map<String, String> attributes) {
+        attributes.put("data-x", "<\"a\" & 'b'>");
+      }
+    });
+
+    String expected = "<a href=\"http://example.com\" data-x=\"&lt;&quot;a&quot; &amp; &#39;b&#39;&gt;\">http://example.com</a>";
+    assertAutolink(expected, linker.autoLinkURLs("http://example.com"));
+  }
+
+  @Test
+  public void escapeBracketsReturnsSameStringWhenNothingToEscape() {
+    String text = "nothing to escape";
+    assertTrue(text == linker.escapeBrackets(text));
+    assertEquals("a &lt;b&gt; c&gt;", linker.escapeBrackets("a <b> c>"));
+  }
+
   @Test
   public void usernameIncludeSymbol() {
     linker.setMentionIncludeSymbol(true);
@@ -206,6 +272,100 @@ public class AutolinkTest {
     assertTrue("LinkTextModifier should modify a username link text", Pattern.matches(".*<a[^>]+>pre_<s>\\^</s><b>mention</b>_post</a>.*", result));
   }
 
+  @Test
+  public void asyncMentionLinker() throws Exception {
+    final ExecutorService executor = Executors.newFixedThreadPool(2);
+    final AtomicInteger lookups = new AtomicInteger();
+    linker.setNoFollow(false);
+
+    try {
+      List<String> linked = linker.autoLink(Arrays.asList("^a and ^b", "^a again", "^broken"), new Autolink.AsyncMentionLinker() {
+        public Future<String> link(final String mention) {
+          lookups.incrementAndGet();
+          return executor.submit(new Callable<String>() {
+            public String call() throws Exception {
+              if (mention.equals("broken")) {
+                throw new IllegalStateException();
+              }
+              return "https://entity.example/" + mention;
+            }
+          });
+        }
+      });
+
+      assertEquals(3, lookups.get());
+      assertEquals("^<a class=\"username\" href=\"https://entity.example/a\">a</a> and ^<a class=\"username\" href=\"https://entity.example/b\">b</a>", linked.get(0));
+      assertEquals("^<a class=\"username\" href=\"https://entity.example/a\">a</a> again", linked.get(1));
+      assertEquals("^<a class=\"username\" href=\"https://broken.tent.is\">broken</a>", linked.get(2));
+    } finally {
+      executor.shutdown();
+    }
+  }
+
+  @Test
+  public void asyncMentionLinkerCancelled() throws Exception {
+    linker.setNoFollow(false);
+
+    String linked = linker.autoLink("^cancelled", new Autolink.AsyncMentionLinker() {
+      public Future<String> link(String mention) {
+        FutureTask<String> lookup = new FutureTask<String>(new Callable<String>() {
+          public String call() {
+            return "https://entity.example/cancelled";
+          }
+        });
+        lookup.cancel(false);
+        return lookup;
+      }
+    });
+
+    assertEquals("^<a class=\"username\" href=\"https://cancelled.tent.is\">cancelled</a>", linked);
+  }
+
+  @Test
+  public void asyncMentionLinkerTimesOut() throws Exception {
+    final FutureTask<String> hanging = new FutureTask<String>(new Callable<String>() {
+      public String call() {
+        return "https://entity.example/hanging";
+      }
+    });
+    linker.setNoFollow(false);
+
+    String linked = linker.autoLink("^hanging", new Autolink.AsyncMentionLinker() {
+      public Future<String> link(String mention) {
+        return hanging;
+      }
+    }, 50, TimeUnit.MILLISECONDS);
+
+    assertEquals("^<a class=\"username\" href=\"https://hanging.tent.is\">hanging</a>", linked);
+    assertTrue("Lookup still running should be cancelled", hanging.isCancelled());
+  }
+
+  @Test
+  public void asyncMentionLinkerCancelsLookupsWhenInterrupted() throws Exception {
+    final List<FutureTask<String>> lookups = new ArrayList<FutureTask<String>>();
+    Thread.currentThread().interrupt();
+
+    try {
+      linker.autoLink("^a ^b", new Autolink.AsyncMentionLinker() {
+        public Future<String> link(String mention) {
+          FutureTask<String> lookup = new FutureTask<String>(new Callable<String>() {
+            public String call() {
+              return "https://entity.example/";
+            }
+          });
+          lookups.add(lookup);
+          return lookup;
+        }
+      });
+      fail("Should be interrupted");
+    } catch (InterruptedException e) {
+      assertEquals(2, lookups.size());
+      for (FutureTask<String> lookup : lookups) {
+        assertTrue(lookup.isCancelled());
+      }
+    }
+  }
+
   protected void assertAutolink(String expected, String linked) {
     assertEquals("Autolinked text should equal the input", expected, linked);
   }
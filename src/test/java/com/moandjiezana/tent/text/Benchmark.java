@@ -1,15 +1,25 @@
 package com.moandjiezana.tent.text;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 /**
  * Micro benchmark for discovering hotspots in our autolinker.
+ * <p/>
+ * Run with no arguments to benchmark the conformance cases (requires -Dconformance.dir), or with "mentions" to
+ * benchmark posts containing many mentions rendered with symbol tags, or with "replay" and a file written by
+ * {@link SlowInputCapture#dump(java.io.Writer)} to benchmark the operations of captured slow calls.
  */
 public class Benchmark extends ConformanceTest {
 
   private static final int AUTO_LINK_TESTS = 10000;
   private static final int ITERATIONS = 10;
+  private static final int MENTIONS_PER_POST = 50;
 
   public double testBenchmarkAutolinking() throws Exception {
     File yamlFile = new File(conformanceDir, "autolink.yml");
@@ -25,14 +35,131 @@ public class Benchmark extends ConformanceTest {
     return autolinksPerMS;
   }
 
+  public double testBenchmarkMentionAutolinking() {
+    Autolink mentionLinker = new Autolink();
+    mentionLinker.setSymbolTag("s");
+    mentionLinker.setTextWithSymbolTag("b");
+
+    StringBuilder post = new StringBuilder();
+    for (int i = 0; i < MENTIONS_PER_POST; i++) {
+      post.append("^user").append(i).append(i % 5 == 0 ? " #tag" + i : "").append(' ');
+    }
+    String text = post.toString();
+
+    mentionLinker.autoLink(text);
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < AUTO_LINK_TESTS; i++) {
+      mentionLinker.autoLink(text);
+    }
+    long diff = Math.max(1, System.currentTimeMillis() - start);
+    double autolinksPerMS = ((double) AUTO_LINK_TESTS) / diff;
+    System.out.println(autolinksPerMS + " mention-heavy autolinks per ms");
+    return autolinksPerMS;
+  }
+
+  public double testBenchmarkReplay(List<SlowCall> calls) {
+    Replayer replayer = new Replayer();
+    for (SlowCall call : calls) {
+      replayer.replay(call);
+    }
+
+    int replays = Math.max(1, AUTO_LINK_TESTS / Math.max(1, calls.size()));
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < replays; i++) {
+      for (SlowCall call : calls) {
+        replayer.replay(call);
+      }
+    }
+    long diff = Math.max(1, System.currentTimeMillis() - start);
+    double callsPerMS = ((double) replays * calls.size()) / diff;
+    System.out.println(callsPerMS + " replayed calls per ms");
+    return callsPerMS;
+  }
+
+  /**
+   * Repeats each captured call with the operation that was slow.
+   */
+  static class Replayer {
+    private final Extractor extractor = new Extractor();
+    private final Autolink autolink = new Autolink();
+    private final Validator validator = new Validator();
+    private final HitHighlighter highlighter = new HitHighlighter();
+
+    Object replay(SlowCall call) {
+      String input = call.getInput();
+      switch (call.getOperation()) {
+      case EXTRACTION:
+        return extract(call.getEntityType(), input);
+      case RENDERING:
+        return autolink.autoLink(input);
+      case VALIDATION:
+        return validator.getTweetLength(input);
+      case HIGHLIGHTING:
+        return highlighter.highlight(input, hits(input.length(), call.getCount()));
+      default:
+        throw new IllegalArgumentException("Unknown operation: " + call.getOperation());
+      }
+    }
+
+    private List<Extractor.Entity> extract(Extractor.Entity.Type type, String input) {
+      if (type == null) {
+        return extractor.extractEntitiesWithIndices(input);
+      }
+      switch (type) {
+      case URL:
+        return extractor.extractURLsWithIndices(input);
+      case HASHTAG:
+        return extractor.extractHashtagsWithIndices(input);
+      case MENTION:
+        return extractor.extractMentionsOrListsWithIndices(input);
+      case CASHTAG:
+        return extractor.extractCashtagsWithIndices(input);
+      default:
+        throw new IllegalArgumentException("Unknown entity type: " + type);
+      }
+    }
+
+    /**
+     * The hits themselves aren't captured, so highlights as many one-char hits, spread over the input
+     */
+    private static List<List<Integer>> hits(int length, int count) {
+      count = Math.min(count, length);
+      List<List<Integer>> hits = new ArrayList<List<Integer>>(count);
+      for (int i = 0; i < count; i++) {
+        int start = (int) ((long) i * length / count);
+        hits.add(Arrays.asList(start, start + 1));
+      }
+      return hits;
+    }
+  }
+
   public static void main(String[] args) throws Exception {
+    boolean mentions = args.length > 0 && "mentions".equals(args[0]);
+    List<SlowCall> replay = null;
+    if (args.length > 1 && "replay".equals(args[0])) {
+      Reader reader = new InputStreamReader(new FileInputStream(args[1]), "UTF-8");
+      try {
+        replay = SlowInputCapture.read(reader);
+      } finally {
+        reader.close();
+      }
+    }
     Benchmark benchmark = new Benchmark();
-    benchmark.setUp();
+    if (!mentions && replay == null) {
+      benchmark.setUp();
+    }
     double total = 0;
     double best = Double.MAX_VALUE;
     double worst = 0;
     for (int i = 0; i < ITERATIONS; i++) {
-      double result = benchmark.testBenchmarkAutolinking();
+      double result;
+      if (replay != null) {
+        result = benchmark.testBenchmarkReplay(replay);
+      } else if (mentions) {
+        result = benchmark.testBenchmarkMentionAutolinking();
+      } else {
+        result = benchmark.testBenchmarkAutolinking();
+      }
       if (best > result) best = result;
       if (worst < result) worst = result;
       total += result;
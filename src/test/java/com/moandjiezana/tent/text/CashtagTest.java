@@ -0,0 +1,57 @@
+package com.moandjiezana.tent.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for the extractCashtags{WithIndices} methods
+ */
+public class CashtagTest extends ExtractorTest {
+  private final Extractor extractor = new Extractor();
+
+  @Test
+  public void cashtagsWithSuffixes() {
+    List<String> extracted = extractor.extractCashtags("$BRK.A and $ab_cd, $aapl.");
+    assertList("Failed to extract cashtags", new String[] { "BRK.A", "ab_cd", "aapl" }, extracted);
+  }
+
+  @Test
+  public void should_not_extract_invalid_cashtags() {
+    List<String> extracted = extractor.extractCashtags("a$GOOG $toolong $12 $GOOG1");
+    assertList("Should be empty", new String[0], extracted);
+  }
+
+  @Test
+  public void should_drop_suffix_that_is_too_long() {
+    List<Extractor.Entity> extracted = extractor.extractCashtagsWithIndices(" $ab.cde");
+    assertEquals(1, extracted.size());
+    assertEquals("ab", extracted.get(0).getValue());
+    assertEquals(1, extracted.get(0).getStart().intValue());
+    assertEquals(4, extracted.get(0).getEnd().intValue());
+  }
+
+  @Test
+  public void should_only_extract_cashtags_in_dictionary() {
+    extractor.setCashtagDictionary(new CashtagDictionary(Arrays.asList("AAPL", "BRK.A")));
+
+    List<String> extracted = extractor.extractCashtags("$aapl $foo $BRK.A $BRK");
+    assertList("Failed to filter cashtags", new String[] { "aapl", "BRK.A" }, extracted);
+  }
+
+  @Test
+  public void dictionaryReadsOneSymbolPerLine() throws Exception {
+    CashtagDictionary dictionary = CashtagDictionary.read(new StringReader("# symbols\nAAPL\n\n goog \nAapl\n"));
+
+    assertEquals(2, dictionary.size());
+    assertTrue(dictionary.contains("aapl"));
+    assertTrue(dictionary.contains("$GOOG!", 1, 5));
+    assertFalse(dictionary.contains("GOO"));
+  }
+}
@@ -0,0 +1,43 @@
+package com.moandjiezana.tent.text;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.regex.Pattern;
+
+import org.junit.Test;
+
+/**
+ * Checks the generated CharacterClasses against the Regex definitions they are generated from.
+ */
+public class CharacterClassesTest {
+
+  @Test
+  public void unicodeSpaces() {
+    Pattern pattern = Pattern.compile(Regex.UNICODE_SPACES);
+    for (int c = 0; c <= Character.MAX_VALUE; c++) {
+      assertEquals("\\u" + Integer.toHexString(c), matches(pattern, c), CharacterClasses.isUnicodeSpace((char) c));
+    }
+  }
+
+  @Test
+  public void latinAccents() {
+    Pattern pattern = Pattern.compile("[" + Regex.LATIN_ACCENTS_CHARS + "]");
+    for (int c = 0; c <= Character.MAX_VALUE; c++) {
+      assertEquals("\\u" + Integer.toHexString(c), matches(pattern, c), CharacterClasses.isLatinAccent((char) c));
+    }
+  }
+
+  @Test
+  public void hashtagCharacters() {
+    Pattern alpha = Pattern.compile("[" + Regex.HASHTAG_ALPHA_CHARS + "]", Pattern.CASE_INSENSITIVE);
+    Pattern alphaNumeric = Pattern.compile("[" + Regex.HASHTAG_ALPHA_NUMERIC_CHARS + "]", Pattern.CASE_INSENSITIVE);
+    for (int c = 0; c <= Character.MAX_VALUE; c++) {
+      assertEquals("\\u" + Integer.toHexString(c), matches(alpha, c), CharacterClasses.isHashtagAlpha((char) c));
+      assertEquals("\\u" + Integer.toHexString(c), matches(alphaNumeric, c), CharacterClasses.isHashtagAlphaNumeric((char) c));
+    }
+  }
+
+  private static boolean matches(Pattern pattern, int c) {
+    return pattern.matcher(String.valueOf((char) c)).matches();
+  }
+}
@@ -0,0 +1,65 @@
+package com.moandjiezana.tent.text;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class ChunkedExtractorTest {
+  private static final String[] WORDS = { "tent", "#tent", "^alice", "^bob/list-a", "$AAPL", "$ab.c",
+      "http://example.com/path?q=1", "www.example.org", "example.com", "#日本語", "RT", ":", "^", "#", "$", "\n", "\t",
+      "(", ")", "#a#b", "^a^b", "$A$B", "https://t.co/abc123/def", "foo@bar.com", "😀", "&#x", "é" };
+
+  private final Extractor extractor = new Extractor();
+  private final ExecutorService executor = Executors.newFixedThreadPool(2);
+
+  @After
+  public void shutdown() {
+    executor.shutdownNow();
+  }
+
+  @Test
+  public void extractsLikeSequentialExtraction() throws Exception {
+    Random random = new Random(1);
+    for (int n = 0; n < 300; n++) {
+      StringBuilder text = new StringBuilder();
+      while (text.length() < 400) {
+        text.append(WORDS[random.nextInt(WORDS.length)]);
+        if (random.nextInt(4) > 0) {
+          text.append(random.nextBoolean() ? ' ' : WORDS[random.nextInt(WORDS.length)]);
+        }
+      }
+
+      ChunkedExtractor chunked = new ChunkedExtractor(extractor, executor, 1 + random.nextInt(40));
+      assertEquals(text.toString(), extractor.extractEntitiesWithIndices(text.toString()),
+          chunked.extractEntitiesWithIndices(text.toString()));
+    }
+  }
+
+  @Test
+  public void extractsGeneratedCorpus() throws Exception {
+    ChunkedExtractor chunked = new ChunkedExtractor(extractor, executor, 100);
+    for (CorpusGenerator.Shape shape : CorpusGenerator.Shape.values()) {
+      // Short enough for sequential URL extraction not to overflow the stack
+      String text = new CorpusGenerator(shape.ordinal()).generate(shape, 1500);
+      assertEquals(shape.toString(), extractor.extractEntitiesWithIndices(text),
+          chunked.extractEntitiesWithIndices(text));
+    }
+  }
+
+  @Test
+  public void doesNotSplitWithoutSeparators() throws Exception {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 1000; i++) {
+      text.append("#a,");
+    }
+    ChunkedExtractor chunked = new ChunkedExtractor(extractor, executor, 100);
+
+    assertEquals(extractor.extractEntitiesWithIndices(text.toString()), chunked.extractEntitiesWithIndices(text
+        .toString()));
+  }
+}
@@ -0,0 +1,126 @@
+package com.moandjiezana.tent.text;
+
+import java.util.Random;
+
+/**
+ * Generates posts of a given length, either shaped to stress the extractors or resembling real long-form posts. Used by
+ * {@link ScalingBenchmark} to check that extraction time grows linearly with input length.
+ */
+public class CorpusGenerator {
+
+  public enum Shape {
+    /** a.a.a.a... which looks like an ever longer domain */
+    DOTS {
+      @Override
+      void generate(StringBuilder post, Random random) {
+        post.append("a.");
+      }
+    },
+    /** www.a-a-a-... which looks like an ever longer host name */
+    DASHES {
+      @Override
+      void start(StringBuilder post) {
+        post.append("www.");
+      }
+
+      @Override
+      void generate(StringBuilder post, Random random) {
+        post.append("a-");
+      }
+    },
+    /** A URL whose path is made of nested parentheses */
+    NESTED_PARENTHESES {
+      @Override
+      void start(StringBuilder post) {
+        post.append("http://example.com/");
+      }
+
+      @Override
+      void generate(StringBuilder post, Random random) {
+        post.append(random.nextBoolean() ? "(a" : "a)");
+      }
+    },
+    /** Runs of # and of hashtags */
+    HASHES {
+      @Override
+      void generate(StringBuilder post, Random random) {
+        post.append(random.nextInt(4) == 0 ? "#tag " : "#");
+      }
+    },
+    /** Runs of ^ and of mentions */
+    CARETS {
+      @Override
+      void generate(StringBuilder post, Random random) {
+        post.append(random.nextInt(4) == 0 ? "^user " : "^");
+      }
+    },
+    /** Runs of $ and of cashtags */
+    DOLLARS {
+      @Override
+      void generate(StringBuilder post, Random random) {
+        post.append(random.nextInt(4) == 0 ? "$TSLA " : "$");
+      }
+    },
+    /** Host names made of country code top-level domains, e.g. co.uk.co.jp.com.br... */
+    COUNTRY_CODES {
+      private final String[] domains = { "co", "uk", "jp", "com", "br", "de", "fr", "io", "ly", "xn--p1ai" };
+
+      @Override
+      void generate(StringBuilder post, Random random) {
+        post.append(domains[random.nextInt(domains.length)]).append(random.nextInt(8) == 0 ? " " : ".");
+      }
+    },
+    /** Right-to-left, CJK and emoji text with entities */
+    MIXED_SCRIPTS {
+      private final String[] words = { "עברית", "العربية", "日本語", "한국어", "😂", "🇯🇵", "café", "#日本語", "^user", "#עברית", "http://例え.jp", "$AAPL" };
+
+      @Override
+      void generate(StringBuilder post, Random random) {
+        post.append(words[random.nextInt(words.length)]).append(' ');
+      }
+    },
+    /** Prose with occasional mentions, hashtags, cashtags and URLs */
+    LONG_FORM {
+      private final String[] words = { "the", "tent", "protocol", "is", "a", "decentralized", "social", "network", "and", "we", "post", "about", "it" };
+      private final String[] entities = { "^alice", "#tentdev", "$AAPL", "http://example.com/path?q=1", "www.tent.io", "(see http://en.wikipedia.org/wiki/Tent_(protocol))" };
+
+      @Override
+      void generate(StringBuilder post, Random random) {
+        int word = random.nextInt(words.length + entities.length);
+        post.append(word < words.length ? words[word] : entities[word - words.length]);
+        post.append(random.nextInt(12) == 0 ? ". " : " ");
+      }
+    };
+
+    void start(StringBuilder post) {
+    }
+
+    abstract void generate(StringBuilder post, Random random);
+  }
+
+  private final long seed;
+
+  /**
+   * @param seed the same seed always generates the same posts
+   */
+  public CorpusGenerator(long seed) {
+    this.seed = seed;
+  }
+
+  /**
+   * @return a post of the given shape and exactly the given length
+   */
+  public String generate(Shape shape, int length) {
+    Random random = new Random(seed);
+    StringBuilder post = new StringBuilder(length + 64);
+    shape.start(post);
+    while (post.length() < length) {
+      shape.generate(post, random);
+    }
+    post.setLength(length);
+    if (length > 0 && Character.isHighSurrogate(post.charAt(length - 1))) {
+      post.setCharAt(length - 1, ' ');
+    }
+    return post.toString();
+  }
+}
@@ -0,0 +1,37 @@
+package com.moandjiezana.tent.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class CorpusGeneratorTest {
+  private final CorpusGenerator generator = new CorpusGenerator(1);
+
+  @Test
+  public void generatesExactLength() {
+    for (CorpusGenerator.Shape shape : CorpusGenerator.Shape.values()) {
+      for (int length : new int[] { 0, 1, 100, 4096 }) {
+        assertEquals(shape + " of length " + length, length, generator.generate(shape, length).length());
+      }
+    }
+  }
+
+  @Test
+  public void isDeterministic() {
+    assertEquals(generator.generate(CorpusGenerator.Shape.LONG_FORM, 1000), new CorpusGenerator(1).generate(CorpusGenerator.Shape.LONG_FORM, 1000));
+  }
+
+  @Test
+  public void generatesEntities() {
+    Extractor extractor = new Extractor();
+    String post = generator.generate(CorpusGenerator.Shape.LONG_FORM, 4096);
+    for (Extractor.Entity.Type type : Extractor.Entity.Type.values()) {
+      boolean found = false;
+      for (Extractor.Entity entity : extractor.extractEntitiesWithIndices(post)) {
+        found |= entity.getType() == type;
+      }
+      assertTrue(type + " in " + post, found);
+    }
+  }
+}
@@ -0,0 +1,101 @@
+package com.moandjiezana.tent.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.moandjiezana.tent.text.Extractor.Entity;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class EntityCodecTest {
+  private final Extractor extractor = new Extractor();
+
+  private static void assertSameEntities(List<Entity> expected, List<Entity> actual) {
+    assertEquals(expected, actual);
+    for (int i = 0; i < expected.size(); i++) {
+      assertEquals(expected.get(i).getListSlug(), actual.get(i).getListSlug());
+      assertEquals(expected.get(i).getDisplayURL(), actual.get(i).getDisplayURL());
+      assertEquals(expected.get(i).getExpandedURL(), actual.get(i).getExpandedURL());
+    }
+  }
+
+  @Test
+  public void roundTrip() {
+    String text = "^alice ^bob/list-slug #日本語 ＃tag $AAPL http://example.com/path 😂 www.tent.io";
+    List<Entity> entities = extractor.extractEntitiesWithIndices(text);
+    entities.get(entities.size() - 1).setDisplayURL("tent.io");
+    entities.get(entities.size() - 1).setExpandedURL("http://www.tent.io/é");
+
+    byte[] encoded = EntityCodec.encode(text, entities);
+
+    assertSameEntities(entities, EntityCodec.decode(text, encoded));
+  }
+
+  @Test
+  public void isCompact() {
+    String text = "^alice #tent $AAPL";
+    byte[] encoded = EntityCodec.encode(text, extractor.extractEntitiesWithIndices(text));
+    assertEquals(2 + 3 * 5, encoded.length);
+  }
+
+  @Test
+  public void unsortedEntities() {
+    String text = "#b #a";
+    List<Entity> entities = Arrays.asList(new Entity(3, 5, "a", Entity.Type.HASHTAG), new Entity(0, 2, "b", Entity.Type.HASHTAG));
+    assertSameEntities(entities, EntityCodec.decode(text, EntityCodec.encode(text, entities)));
+  }
+
+  @Test
+  public void cursor() {
+    String text = "see ^bob/friends";
+    EntityCodec.Cursor cursor = EntityCodec.cursor(EntityCodec.encode(text, extractor.extractEntitiesWithIndices(text)));
+
+    assertEquals(1, cursor.remaining());
+    assertTrue(cursor.next());
+    assertEquals(Entity.Type.MENTION, cursor.getType());
+    assertEquals(4, cursor.getStart());
+    assertEquals(16, cursor.getEnd());
+    assertEquals("bob", text.substring(cursor.getValueStart(), cursor.getValueEnd()));
+    assertEquals("/friends", text.substring(cursor.getListSlugStart(), cursor.getListSlugEnd()));
+    assertNull(cursor.getDisplayURL());
+    assertFalse(cursor.next());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void valueMustBeInText() {
+    EntityCodec.encode("#tag", Arrays.asList(new Entity(0, 4, "other", Entity.Type.HASHTAG)));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void truncated() {
+    byte[] encoded = EntityCodec.encode("#tag", Arrays.asList(new Entity(0, 4, "tag", Entity.Type.HASHTAG)));
+    EntityCodec.decode("#tag", Arrays.copyOf(encoded, encoded.length - 1));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void countLargerThanBytes() {
+    EntityCodec.decode("#tag", new byte[] { 1, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x07 });
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void negativeLength() {
+    EntityCodec.decode("#tag", new byte[] { 1, 1, 0, 0, 0, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f, 0 });
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void valueOutsideOfEntity() {
+    // Value of length 4 in an entity of length 2
+    EntityCodec.decode("#tag", new byte[] { 1, 1, 1, 0, 2, 0, 4 });
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void rangeOutsideOfBytes() {
+    byte[] encoded = EntityCodec.encode("#tag", Arrays.asList(new Entity(0, 4, "tag", Entity.Type.HASHTAG)));
+    EntityCodec.cursor(encoded, 2, encoded.length);
+  }
+}
@@ -35,6 +35,30 @@ public class HashtagTest extends ExtractorTest {
     assertList("Failed to extract multiple hashtags", new String[]{"hashtag1", "hashtag2"}, extracted);
   }
 
+  @Test
+  public void should_not_extract_hashtags_inside_urls() {
+    String text = "#before http://example.com/#a#b#c #after ^user $CASH";
+    List<String> extracted = extractor.extractHashtags(text);
+    assertList("Failed to skip hashtags in URL", new String[]{"before", "after"}, extracted);
+
+    List<Extractor.Entity> entities = extractor.extractEntitiesWithIndices(text);
+    assertEquals(5, entities.size());
+    assertEquals(Extractor.Entity.Type.HASHTAG, entities.get(0).getType());
+    assertEquals(Extractor.Entity.Type.URL, entities.get(1).getType());
+    assertEquals(Extractor.Entity.Type.HASHTAG, entities.get(2).getType());
+    assertEquals(Extractor.Entity.Type.MENTION, entities.get(3).getType());
+    assertEquals(Extractor.Entity.Type.CASHTAG, entities.get(4).getType());
+  }
+
+  @Test
+  public void should_reuse_extracted_urls() {
+    String text = "#before http://example.com/#a #after";
+    List<Extractor.Entity> urls = extractor.extractURLsWithIndices(text);
+
+    assertEquals(extractor.extractHashtagsWithIndices(text), extractor.extractHashtagsWithIndices(text, urls));
+    assertEquals(3, extractor.extractHashtagsWithIndices(text, false).size());
+  }
+
   @Test
   public void hashtagWithIndices() {
     List<Extractor.Entity> extracted = extractor.extractHashtagsWithIndices(" #user1 mention #user2 here #user3 ");
@@ -0,0 +1,93 @@
+package com.moandjiezana.tent.text;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class HitMatcherTest {
+
+  @Test
+  public void matchesAllTermsIgnoringCase() {
+    HitMatcher matcher = new HitMatcher("tent", "DEV", "pos");
+
+    assertEquals("[[0, 4], [5, 8], [13, 16], [19, 23]]", matcher.match("Tent dev and Posts tent").toString());
+    assertEquals("<em>Tent</em> <em>dev</em> and <em>Pos</em>ts <em>tent</em>",
+        new HitHighlighter().highlight("Tent dev and Posts tent", matcher));
+  }
+
+  @Test
+  public void mergesOverlappingHits() {
+    HitMatcher matcher = new HitMatcher("abc", "bcd", "c", "xabcdx");
+
+    assertEquals("[[1, 5]]", matcher.match("zabcdz").toString());
+    assertEquals("[[0, 6]]", matcher.match("xabcdx").toString());
+    assertEquals("[[0, 3], [3, 4]]", matcher.match("abcc").toString());
+  }
+
+  @Test
+  public void matchesWholeWords() {
+    HitMatcher matcher = new HitMatcher(Arrays.asList("tent", "tent dev"), true);
+
+    assertEquals("[[0, 4], [12, 20]]", matcher.match("tent tents #tent dev, detent").toString());
+    assertEquals("[]", matcher.match("tents detent").toString());
+    assertEquals("[[1, 5]]", matcher.match("(Tent)").toString());
+  }
+
+  @Test
+  public void foldsUnicode() {
+    HitMatcher matcher = new HitMatcher("σοφία", "𝐀b");
+
+    assertEquals("[[0, 5]]", matcher.match("ΣΟΦΊΑ").toString());
+    assertEquals("[[0, 5]]", matcher.match("σοφία").toString());
+    // Offsets count both halves of a surrogate pair
+    assertEquals("[[2, 5]]", matcher.match("x 𝐀B").toString());
+  }
+
+  @Test
+  public void skipsHtmlTags() {
+    HitMatcher matcher = new HitMatcher("foo");
+    String text = "foo <a href=\"/foo\">bar</a> foo";
+
+    assertEquals("<em>foo</em> <a href=\"/foo\">bar</a> <em>foo</em>", new HitHighlighter().highlight(text, matcher));
+  }
+
+  @Test
+  public void matchesLikeIndexOf() {
+    Random random = new Random(1);
+    for (int n = 0; n < 200; n++) {
+      StringBuilder text = new StringBuilder();
+      for (int i = 0; i < 100; i++) {
+        text.append((char) ('a' + random.nextInt(3)));
+      }
+      String term = text.substring(random.nextInt(90)).substring(0, 1 + random.nextInt(5));
+
+      assertEquals(mergeHits(indexOfHits(text.toString(), term)), new HitMatcher(term).match(text.toString()));
+    }
+  }
+
+  private static List<List<Integer>> indexOfHits(String text, String term) {
+    List<List<Integer>> hits = new ArrayList<List<Integer>>();
+    for (int i = text.indexOf(term); i >= 0; i = text.indexOf(term, i + 1)) {
+      hits.add(Arrays.asList(i, i + term.length()));
+    }
+    return hits;
+  }
+
+  private static List<List<Integer>> mergeHits(List<List<Integer>> hits) {
+    List<List<Integer>> merged = new ArrayList<List<Integer>>();
+    for (List<Integer> hit : hits) {
+      List<Integer> last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+      if (last != null && hit.get(0) < last.get(1)) {
+        merged.set(merged.size() - 1, Arrays.asList(last.get(0), Math.max(last.get(1), hit.get(1))));
+      } else {
+        merged.add(hit);
+      }
+    }
+    return merged;
+  }
+}
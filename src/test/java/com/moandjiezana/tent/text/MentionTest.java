@@ -58,6 +58,30 @@ public class MentionTest extends ExtractorTest {
     assertList("Should contain two mentions", new String[] { "foo", "bar" }, screennames);
   }
   
+  @Test
+  public void should_extract_mention_preceeded_by_retweet() {
+    List<String> screennames = extractor.extractMentionedScreennames("RT^foo rt:^bar");
+
+    assertList("Should contain two mentions", new String[] { "foo", "bar" }, screennames);
+  }
+
+  @Test
+  public void should_not_extract_mention_followed_by_invalid_end() {
+    List<String> screennames = extractor.extractMentionedScreennames("^foo^bar ^foo\u00e9 ^foo://bar");
+
+    assertList("Should be empty", new String[0], screennames);
+  }
+
+  @Test
+  public void should_extract_list_with_indices() {
+    List<Extractor.Entity> extracted = extractor.extractMentionsOrListsWithIndices("see ^user/my-list.");
+    assertEquals(1, extracted.size());
+    assertEquals("user", extracted.get(0).getValue());
+    assertEquals("/my-list", extracted.get(0).getListSlug());
+    assertEquals(4, extracted.get(0).getStart().intValue());
+    assertEquals(17, extracted.get(0).getEnd().intValue());
+  }
+
   @Test @Ignore
   public void should_extract_fully_qualified_entity() {
     List<String> screenname = extractor.extractMentionedScreennames("^https://mention.tent.is");
@@ -0,0 +1,94 @@
+package com.moandjiezana.tent.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.moandjiezana.tent.text.Extractor.Entity;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class MetricsTest {
+  private final HistogramMetrics metrics = new HistogramMetrics();
+
+  @Test
+  public void extraction() {
+    Extractor extractor = new Extractor();
+    extractor.setMetrics(metrics);
+
+    extractor.extractEntitiesWithIndices("^a ^b #c");
+    extractor.extractMentionsOrListsWithIndices("no mentions");
+
+    HistogramMetrics.Stage mentions = metrics.getExtraction(Entity.Type.MENTION);
+    assertEquals(2, mentions.getNanos().getCount());
+    assertEquals(2, mentions.getCount().getSum());
+    assertEquals(1, mentions.getPrefiltered());
+    assertEquals(0.5, mentions.getPrefilterRate(), 0.001);
+    assertEquals(1, metrics.getExtraction(Entity.Type.CASHTAG).getPrefiltered());
+    assertEquals(1, metrics.getExtraction(Entity.Type.HASHTAG).getCount().getSum());
+  }
+
+  @Test
+  public void hashtagsExcludeURLExtraction() {
+    final long[] hashtagNanos = new long[1];
+    Extractor extractor = new Extractor();
+    extractor.setMetrics(new HistogramMetrics() {
+      @Override
+      public void extracted(Entity.Type type, boolean prefiltered, int inputLength, int entityCount, long nanos) {
+        if (type == Entity.Type.URL) {
+          try {
+            // Makes the nested URL extraction slow
+            Thread.sleep(50);
+          } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+          }
+        } else if (type == Entity.Type.HASHTAG) {
+          hashtagNanos[0] = nanos;
+        }
+      }
+    });
+
+    assertEquals(1, extractor.extractHashtagsWithIndices("#tag http://example.com/#not").size());
+    assertTrue("hashtags took " + hashtagNanos[0] + "ns", hashtagNanos[0] < 40000000L);
+  }
+
+  @Test
+  public void renderingValidationAndHighlighting() {
+    Autolink autolink = new Autolink();
+    autolink.setMetrics(metrics);
+    String html = autolink.autoLink("#hash ^mention");
+
+    Validator validator = new Validator();
+    validator.setMetrics(metrics);
+    validator.isValidTweet("short");
+
+    HitHighlighter highlighter = new HitHighlighter();
+    highlighter.setMetrics(metrics);
+    List<List<Integer>> hits = Arrays.asList(Arrays.asList(0, 5));
+    String highlighted = highlighter.highlight("short text", hits);
+
+    assertEquals(html.length(), metrics.getRendering().getOutputLength().getMax());
+    assertEquals(2, metrics.getRendering().getCount().getSum());
+    assertEquals(1, metrics.getExtraction(Entity.Type.MENTION).getNanos().getCount());
+    assertEquals(1, metrics.getValidation().getNanos().getCount());
+    assertEquals(5, metrics.getValidation().getInputLength().getMax());
+    assertEquals(highlighted.length(), metrics.getHighlighting().getOutputLength().getMax());
+  }
+
+  @Test
+  public void histogramPercentiles() {
+    HistogramMetrics.Histogram histogram = new HistogramMetrics.Histogram();
+    for (int i = 1; i <= 100; i++) {
+      histogram.record(i);
+    }
+
+    assertEquals(100, histogram.getCount());
+    assertEquals(50.5, histogram.getMean(), 0.001);
+    assertEquals(100, histogram.getMax());
+    long median = histogram.getPercentile(50);
+    assertTrue("median was " + median, median >= 50 && median <= 63);
+    assertEquals(100, histogram.getPercentile(100));
+  }
+}
@@ -0,0 +1,78 @@
+package com.moandjiezana.tent.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.moandjiezana.tent.text.Extractor.Entity;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class OffHeapEntityStoreTest {
+  private final Extractor extractor = new Extractor();
+
+  private void assertStores(OffHeapEntityStore store) throws Exception {
+    CorpusGenerator generator = new CorpusGenerator(3);
+    List<List<Entity>> posts = new ArrayList<List<Entity>>();
+    for (int i = 0; i < 300; i++) {
+      List<Entity> entities = extractor.extractEntitiesWithIndices(generator.generate(CorpusGenerator.Shape.LONG_FORM, i));
+      posts.add(entities);
+      store.append(i * 2, entities);
+    }
+
+    long size = 0;
+    for (int i = 0; i < posts.size(); i++) {
+      assertEquals(posts.get(i), store.getEntities(i * 2));
+      assertEquals(0, store.getEntities(i * 2 + 1).size());
+      size += posts.get(i).size();
+    }
+    assertEquals(size, store.size());
+    // Values repeat across posts, so far fewer are stored than entities
+    assertTrue("strings: " + store.getStringCount() + ", entities: " + size, store.getStringCount() * 4 < size);
+  }
+
+  @Test
+  public void directBuffers() throws Exception {
+    OffHeapEntityStore store = new OffHeapEntityStore(null, 1024);
+    assertStores(store);
+    store.close();
+  }
+
+  @Test
+  public void mappedFiles() throws Exception {
+    File directory = File.createTempFile("entity-store", "");
+    directory.delete();
+    directory.mkdir();
+
+    OffHeapEntityStore store = new OffHeapEntityStore(directory, 4096);
+    assertStores(store);
+    assertTrue(directory.list().length > 0);
+    store.close();
+
+    assertEquals(0, directory.list().length);
+    directory.delete();
+  }
+
+  @Test
+  public void listSlugs() throws Exception {
+    OffHeapEntityStore store = new OffHeapEntityStore();
+    store.append(1, extractor.extractMentionsOrListsWithIndices("^bob/friends ^bob"));
+
+    assertEquals("bob", store.getValue(0));
+    assertEquals("/friends", store.getListSlug(0));
+    assertEquals(Entity.Type.MENTION, store.getType(0));
+    assertEquals(null, store.getListSlug(1));
+    assertEquals(2, store.getStringCount());
+    store.close();
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void postsMustBeAscending() throws Exception {
+    OffHeapEntityStore store = new OffHeapEntityStore(null, 1024);
+    store.append(2, extractor.extractHashtagsWithIndices("#a"));
+    store.append(1, extractor.extractHashtagsWithIndices("#b"));
+  }
+}
@@ -0,0 +1,109 @@
+package com.moandjiezana.tent.text;
+
+import java.util.Arrays;
+import java.util.Locale;
+
+/**
+ * Measures how extraction time grows with input length for each shape of {@link CorpusGenerator}, from 1KB to 128KB.
+ * <p/>
+ * Prints the time per call for each length and the scaling exponent between the two largest lengths measured: 1 means
+ * linear, 2 quadratic. Larger lengths are skipped once a call takes more than a second or overflows the stack. Run with the names of
+ * extractors (urls, hashtags, mentions, cashtags, entities, autolink) to measure only those.
+ */
+public class ScalingBenchmark {
+
+  private static final String[] KINDS = { "urls", "hashtags", "mentions", "cashtags", "entities", "autolink" };
+  private static final int MIN_LENGTH = 1024;
+  private static final int MAX_LENGTH = 128 * 1024;
+  private static final long MAX_NANOS = 1000000000L;
+  private static final int RUNS = 5;
+
+  private final Extractor extractor = new Extractor();
+  private final Autolink autolink = new Autolink();
+  private int sink;
+
+  private void run(String kind, String text) {
+    if ("urls".equals(kind)) {
+      sink += extractor.extractURLsWithIndices(text).size();
+    } else if ("hashtags".equals(kind)) {
+      sink += extractor.extractHashtagsWithIndices(text).size();
+    } else if ("mentions".equals(kind)) {
+      sink += extractor.extractMentionsOrListsWithIndices(text).size();
+    } else if ("cashtags".equals(kind)) {
+      sink += extractor.extractCashtagsWithIndices(text).size();
+    } else if ("entities".equals(kind)) {
+      sink += extractor.extractEntitiesWithIndices(text).size();
+    } else if ("autolink".equals(kind)) {
+      sink += autolink.autoLink(text).length();
+    } else {
+      throw new IllegalArgumentException("Unknown kind of extraction: " + kind);
+    }
+  }
+
+  /**
+   * @return median time of a call, in nanoseconds, or -1 if it overflowed the stack
+   */
+  public long time(String kind, String text) {
+    long[] times = new long[RUNS];
+    for (int i = 0; i < RUNS; i++) {
+      long start = System.nanoTime();
+      try {
+        run(kind, text);
+      } catch (StackOverflowError e) {
+        return -1;
+      }
+      times[i] = System.nanoTime() - start;
+      if (times[i] > MAX_NANOS) {
+        return times[i];
+      }
+    }
+    Arrays.sort(times);
+    return times[RUNS / 2];
+  }
+
+  public static void main(String[] args) {
+    String[] kinds = args.length > 0 ? args : KINDS;
+    ScalingBenchmark benchmark = new ScalingBenchmark();
+    CorpusGenerator generator = new CorpusGenerator(42);
+
+    // Warm up on short inputs, so the first measurements aren't of interpreted code
+    for (int i = 0; i < 200; i++) {
+      for (CorpusGenerator.Shape shape : CorpusGenerator.Shape.values()) {
+        for (String kind : kinds) {
+          benchmark.run(kind, generator.generate(shape, 256));
+        }
+      }
+    }
+
+    for (String kind : kinds) {
+      System.out.println(kind);
+      for (CorpusGenerator.Shape shape : CorpusGenerator.Shape.values()) {
+        StringBuilder line = new StringBuilder(String.format(Locale.ROOT, "  %-20s", shape));
+        int previousLength = 0;
+        long previous = 0;
+        double exponent = Double.NaN;
+        for (int length = MIN_LENGTH; length <= MAX_LENGTH; length *= 2) {
+          long nanos = benchmark.time(kind, generator.generate(shape, length));
+          if (nanos < 0) {
+            line.append(String.format(Locale.ROOT, " %6dK: overflow", length / 1024));
+            break;
+          }
+          line.append(String.format(Locale.ROOT, " %6dK:%9.3fms", length / 1024, nanos / 1e6));
+          if (previous > 0) {
+            exponent = Math.log((double) nanos / previous) / Math.log((double) length / previousLength);
+          }
+          previousLength = length;
+          previous = nanos;
+          if (nanos > MAX_NANOS) {
+            break;
+          }
+        }
+        line.append(String.format(Locale.ROOT, "   exponent %.2f", exponent));
+        System.out.println(line);
+      }
+    }
+    if (benchmark.sink == 42) {
+      System.out.println();
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package com.moandjiezana.tent.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import com.moandjiezana.tent.text.Extractor.Entity;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class SlowCallTest {
+  private final List<SlowCall> calls = new ArrayList<SlowCall>();
+  private final SlowCall.Listener listener = new SlowCall.Listener() {
+    @Override
+    public void slowCall(SlowCall call) {
+      calls.add(call);
+    }
+  };
+
+  @Test
+  public void reportsCallsAboveThreshold() {
+    Autolink autolink = new Autolink();
+    autolink.setSlowCallListener(listener, 0, TimeUnit.NANOSECONDS);
+    autolink.autoLink("^mention #hash");
+
+    List<SlowCall.Operation> operations = new ArrayList<SlowCall.Operation>();
+    for (SlowCall call : calls) {
+      operations.add(call.getOperation());
+    }
+    assertTrue(operations.contains(SlowCall.Operation.EXTRACTION));
+    SlowCall rendering = calls.get(calls.size() - 1);
+    assertEquals(SlowCall.Operation.RENDERING, rendering.getOperation());
+    assertNull(rendering.getEntityType());
+    assertEquals(14, rendering.getInputLength());
+    assertEquals(2, rendering.getCount());
+  }
+
+  @Test
+  public void reportsEntityType() {
+    Extractor extractor = new Extractor();
+    extractor.setSlowCallListener(listener, 0, TimeUnit.NANOSECONDS);
+    extractor.extractCashtagsWithIndices("$AAPL and $GOOG");
+
+    assertEquals(1, calls.size());
+    assertEquals(Entity.Type.CASHTAG, calls.get(0).getEntityType());
+    assertEquals(2, calls.get(0).getCount());
+  }
+
+  @Test
+  public void ignoresFastCalls() {
+    Validator validator = new Validator();
+    validator.setSlowCallListener(listener, 1, TimeUnit.HOURS);
+    validator.isValidTweet("short http://example.com");
+
+    HitHighlighter highlighter = new HitHighlighter();
+    highlighter.setSlowCallListener(listener, 1, TimeUnit.HOURS);
+    highlighter.highlight("short text", Arrays.asList(Arrays.asList(0, 5)));
+
+    assertEquals(0, calls.size());
+  }
+
+  @Test
+  public void hashesInput() {
+    // SHA-256 of "abc" is ba7816bf8f01cfea414140de5dae2223...
+    assertEquals("ba7816bf8f01cfea", SlowCall.hash("abc"));
+    assertEquals(16, new SlowCall(SlowCall.Operation.VALIDATION, null, "日本語", 0, 1).getInputHash().length());
+  }
+}
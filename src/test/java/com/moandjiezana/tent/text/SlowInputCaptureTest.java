@@ -0,0 +1,181 @@
+package com.moandjiezana.tent.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import com.moandjiezana.tent.text.Extractor.Entity;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+public class SlowInputCaptureTest {
+
+  private static SlowCall call(String input) {
+    return new SlowCall(SlowCall.Operation.RENDERING, null, input, 0, 1000);
+  }
+
+  @Test
+  public void keepsMostRecentInputs() {
+    SlowInputCapture capture = new SlowInputCapture(2, 100);
+    capture.slowCall(call("one"));
+    capture.slowCall(call("two"));
+    capture.slowCall(call("three"));
+
+    List<SlowCall> captured = capture.getCaptured();
+    assertEquals(2, captured.size());
+    assertEquals("two", captured.get(0).getInput());
+    assertEquals("three", captured.get(1).getInput());
+    assertEquals(3, capture.getCapturedCount());
+
+    capture.clear();
+    assertEquals(0, capture.getCaptured().size());
+    assertEquals(0, capture.getCapturedCount());
+    capture.slowCall(call("four"));
+    assertEquals("four", capture.getCaptured().get(0).getInput());
+    assertEquals(1, capture.getCapturedCount());
+  }
+
+  @Test
+  public void keepsMostRecentInputsFromConcurrentThreads() throws Exception {
+    final int threadCount = 8;
+    final int callsPerThread = 20000;
+    final SlowInputCapture capture = new SlowInputCapture(4, 100);
+    final AtomicBoolean running = new AtomicBoolean(true);
+    final AtomicReference<String> readerFailure = new AtomicReference<String>();
+
+    Thread reader = new Thread() {
+      @Override
+      public void run() {
+        while (running.get() && readerFailure.get() == null) {
+          List<SlowCall> captured = capture.getCaptured();
+          int[] last = new int[threadCount];
+          Arrays.fill(last, -1);
+          for (SlowCall call : captured) {
+            String[] ids = call.getInput().split(":");
+            int thread = Integer.parseInt(ids[0]);
+            int index = Integer.parseInt(ids[1]);
+            if (index <= last[thread] || captured.size() > 4) {
+              readerFailure.set(captured.toString());
+            }
+            last[thread] = index;
+          }
+        }
+      }
+    };
+    reader.start();
+
+    List<Thread> writers = new ArrayList<Thread>();
+    for (int t = 0; t < threadCount; t++) {
+      final int thread = t;
+      writers.add(new Thread() {
+        @Override
+        public void run() {
+          for (int i = 0; i < callsPerThread; i++) {
+            capture.slowCall(call(thread + ":" + i));
+          }
+        }
+      });
+    }
+    for (Thread writer : writers) {
+      writer.start();
+    }
+    for (Thread writer : writers) {
+      writer.join();
+    }
+    running.set(false);
+    reader.join();
+
+    assertNull(readerFailure.get());
+    assertEquals(threadCount * callsPerThread, capture.getCapturedCount());
+    // The 4 most recent calls: those of each thread are its last ones, in order
+    List<SlowCall> captured = capture.getCaptured();
+    assertEquals(4, captured.size());
+    int[] next = new int[threadCount];
+    Arrays.fill(next, -1);
+    for (SlowCall call : captured) {
+      String[] ids = call.getInput().split(":");
+      int thread = Integer.parseInt(ids[0]);
+      int index = Integer.parseInt(ids[1]);
+      if (next[thread] != -1) {
+        assertEquals(captured.toString(), next[thread], index);
+      }
+      next[thread] = index + 1;
+    }
+    for (int thread = 0; thread < threadCount; thread++) {
+      if (next[thread] != -1) {
+        assertEquals(callsPerThread, next[thread]);
+      }
+    }
+  }
+
+  @Test
+  public void truncatesAndRedactsButKeepsHash() {
+    SlowInputCapture capture = new SlowInputCapture(4, 5);
+    capture.setRedactor(new SlowInputCapture.Redactor() {
+      @Override
+      public String redact(String input) {
+        return input.replace("secret", "xxxxxx");
+      }
+    });
+    capture.slowCall(call("secret post"));
+
+    SlowCall captured = capture.getCaptured().get(0);
+    assertEquals("xxxxx", captured.getInput());
+    assertEquals(SlowCall.hash("secret post"), captured.getInputHash());
+  }
+
+  @Test
+  public void dumpsInputsForReplay() throws Exception {
+    SlowInputCapture capture = new SlowInputCapture();
+    List<String> inputs = Arrays.asList("#hash first", "", "line\nbreak \\ back\r\nslash", "",
+        "^mention http://example.com");
+    for (String input : inputs) {
+      capture.slowCall(call(input));
+    }
+    capture.slowCall(new SlowCall(SlowCall.Operation.EXTRACTION, Entity.Type.HASHTAG, "#tent", 1, 2000));
+    capture.slowCall(new SlowCall(SlowCall.Operation.HIGHLIGHTING, null, "", 0, 3000));
+
+    StringWriter writer = new StringWriter();
+    capture.dump(writer);
+    List<SlowCall> calls = SlowInputCapture.read(new StringReader("# comment\n\n" + writer));
+
+    assertEquals(inputs.size() + 2, calls.size());
+    for (int i = 0; i < inputs.size(); i++) {
+      assertEquals(inputs.get(i), calls.get(i).getInput());
+      assertEquals(SlowCall.Operation.RENDERING, calls.get(i).getOperation());
+      assertNull(calls.get(i).getEntityType());
+    }
+    SlowCall extraction = calls.get(inputs.size());
+    assertEquals(SlowCall.Operation.EXTRACTION, extraction.getOperation());
+    assertEquals(Entity.Type.HASHTAG, extraction.getEntityType());
+    assertEquals(1, extraction.getCount());
+    assertEquals(2000, extraction.getNanos());
+    assertEquals(SlowCall.Operation.HIGHLIGHTING, calls.get(inputs.size() + 1).getOperation());
+    assertEquals("", calls.get(inputs.size() + 1).getInput());
+  }
+
+  @Test(expected = IOException.class)
+  public void rejectsInputWithoutDescription() throws Exception {
+    SlowInputCapture.read(new StringReader("# comment\n^mention\n"));
+  }
+
+  @Test
+  public void capturesFromAutolink() {
+    SlowInputCapture capture = new SlowInputCapture();
+    Autolink autolink = new Autolink();
+    autolink.setSlowCallListener(capture, 0, TimeUnit.NANOSECONDS);
+    autolink.autoLink("#slow");
+
+    List<SlowCall> captured = capture.getCaptured();
+    assertEquals("#slow", captured.get(captured.size() - 1).getInput());
+  }
+}
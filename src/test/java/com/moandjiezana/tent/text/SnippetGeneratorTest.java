@@ -0,0 +1,104 @@
+package com.moandjiezana.tent.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+public class SnippetGeneratorTest {
+  private final SnippetGenerator generator = new SnippetGenerator();
+
+  private static String words(int count) {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < count; i++) {
+      text.append("lorem ");
+    }
+    return text.toString();
+  }
+
+  @Test
+  public void selectsDensestWindow() {
+    String text = words(20) + "tent " + words(20) + "tent posts on tent " + words(20);
+    List<List<Integer>> hits = new HitMatcher("tent").match(text);
+
+    String snippet = generator.snippet(text, hits, 40);
+
+    assertEquals("…lorem <em>tent</em> posts on <em>tent</em> lorem…", snippet);
+  }
+
+  @Test
+  public void keepsShortTextWhole() {
+    assertEquals("<em>tent</em> posts", generator.snippet("tent posts", new HitMatcher("tent").match("tent posts"), 40));
+  }
+
+  @Test
+  public void startsTextWithoutHits() {
+    String text = words(20);
+    assertEquals("lorem lorem lorem…", generator.snippet(text, Collections.<List<Integer>> emptyList(), 20));
+  }
+
+  @Test
+  public void neverCutsEntities() {
+    String text = words(10) + "http://example.com/a/long/path/to/something tent " + words(10);
+    List<List<Integer>> hits = new HitMatcher("tent").match(text);
+
+    String snippet = generator.snippet(text, hits, 30);
+
+    assertEquals("…<em>tent</em> lorem lorem…", snippet);
+  }
+
+  @Test
+  public void takesInEntitiesContainingHits() {
+    String text = words(10) + "http://example.com/a/long/path/to/tent/something " + words(10);
+    List<List<Integer>> hits = new HitMatcher("tent").match(text);
+
+    String snippet = generator.snippet(text, hits, 20);
+
+    assertEquals("…http://example.com/a/long/path/to/<em>tent</em>/something…", snippet);
+  }
+
+  @Test
+  public void neverCutsSurrogatePairs() {
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 40; i++) {
+      text.append("😀");
+    }
+    text.append("tent");
+    for (int i = 0; i < 40; i++) {
+      text.append("😀");
+    }
+    List<List<Integer>> hits = Collections.singletonList(Arrays.asList(80, 84));
+
+    for (int length = 5; length < 12; length++) {
+      String snippet = generator.snippet(text.toString(), hits, length);
+      assertTrue(snippet, snippet.matches("…(😀)*<em>tent</em>(😀)*…"));
+    }
+  }
+
+  @Test
+  public void selectsSeveralWindows() {
+    String text = "tent " + words(20) + "posts and more posts " + words(20) + "tent posts";
+    List<List<Integer>> hits = new HitMatcher("tent", "posts").match(text);
+
+    List<String> snippets = generator.snippets(text, hits, 25, 2);
+
+    assertEquals(Arrays.asList("…<em>posts</em> and more <em>posts</em>…", "…lorem lorem <em>tent</em> <em>posts</em>"),
+        snippets);
+    assertEquals(3, generator.snippets(text, hits, 25, 5).size());
+  }
+
+  @Test
+  public void mergesOverlappingHits() {
+    String text = words(20);
+    List<List<Integer>> hits = Arrays.asList(Arrays.asList(0, 50), Arrays.asList(45, 55));
+
+    assertEquals("<em>" + text.substring(0, 55) + "</em>…", generator.snippet(text, hits, 20));
+
+    hits = Arrays.asList(Arrays.asList(12, 16), Arrays.asList(14, 21));
+    assertEquals("…<em>lorem lor</em>…", generator.snippet(text, hits, 6));
+  }
+}
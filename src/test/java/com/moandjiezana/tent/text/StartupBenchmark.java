@@ -0,0 +1,67 @@
+package com.moandjiezana.tent.text;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Measures the time to the first extraction in a fresh JVM, including loading classes and compiling patterns.
+ * <p/>
+ * Run with no arguments to launch a fresh JVM for each kind of extraction, or with the name of a kind (mentions,
+ * hashtags, urls, cashtags, entities, autolink) to time it in the current JVM.
+ */
+public class StartupBenchmark {
+
+  private static final String[] KINDS = { "mentions", "hashtags", "urls", "cashtags", "entities", "autolink" };
+  private static final String TEXT = "RT ^user: #tag $CASH http://example.com/path?q=1 www.example.org";
+  private static final int RUNS = 5;
+
+  public static long timeFirstExtraction(String kind) {
+    long start = System.nanoTime();
+    if ("mentions".equals(kind)) {
+      new Extractor().extractMentionedScreennames(TEXT);
+    } else if ("hashtags".equals(kind)) {
+      new Extractor().extractHashtags(TEXT);
+    } else if ("urls".equals(kind)) {
+      new Extractor().extractURLs(TEXT);
+    } else if ("cashtags".equals(kind)) {
+      new Extractor().extractCashtags(TEXT);
+    } else if ("entities".equals(kind)) {
+      new Extractor().extractEntitiesWithIndices(TEXT);
+    } else if ("autolink".equals(kind)) {
+      new Autolink().autoLink(TEXT);
+    } else {
+      throw new IllegalArgumentException("Unknown kind of extraction: " + kind);
+    }
+    return System.nanoTime() - start;
+  }
+
+  public static void main(String[] args) throws Exception {
+    if (args.length > 0) {
+      System.out.println(timeFirstExtraction(args[0]));
+      return;
+    }
+
+    String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+    String classpath = System.getProperty("java.class.path");
+    for (String kind : KINDS) {
+      List<Long> times = new ArrayList<Long>();
+      for (int i = 0; i < RUNS; i++) {
+        Process process = new ProcessBuilder(java, "-cp", classpath, StartupBenchmark.class.getName(), kind).redirectErrorStream(true).start();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
+        times.add(Long.parseLong(reader.readLine().trim()));
+        process.waitFor();
+      }
+
+      long total = 0;
+      long best = Long.MAX_VALUE;
+      for (long time : times) {
+        total += time;
+        best = Math.min(best, time);
+      }
+      System.out.println(kind + ": " + (total / RUNS / 1000) + " us average, " + (best / 1000) + " us best to first extraction");
+    }
+  }
+}
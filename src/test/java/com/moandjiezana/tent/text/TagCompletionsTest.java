@@ -0,0 +1,98 @@
+package com.moandjiezana.tent.text;
+
+import static org.junit.Assert.assertEquals;
+
+import com.moandjiezana.tent.text.TagCompletions.Completion;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TagCompletionsTest {
+  private final TagCompletions completions = new TagCompletions(new Extractor(), 1, TimeUnit.HOURS);
+
+  @Test
+  public void completesMostFrequentFirst() {
+    completions.add("#TentDev #tent ^alice");
+    completions.add("#tentdev #tea ^Albert ^alice http://example.com/#tent");
+    completions.add("#tentdev #tent #other");
+    completions.rebuild();
+
+    assertEquals("[#TentDev=3, #tent=2]", completions.complete("#ten", 10).toString());
+    assertEquals("[#TentDev=3, #tent=2, #tea=1]", completions.complete("#TE", 10).toString());
+    assertEquals("[#TentDev=3]", completions.complete("＃te", 1).toString());
+    assertEquals("[^alice=2, ^Albert=1]", completions.complete("^al", 10).toString());
+    assertEquals("[#TentDev=3, #tent=2, #other=1, #tea=1]", completions.complete("#", 10).toString());
+    assertEquals("[]", completions.complete("#x", 10).toString());
+    assertEquals(6, completions.getTagCount());
+  }
+
+  @Test
+  public void readsSnapshots() {
+    completions.add("#tent");
+    assertEquals("[]", completions.complete("#t", 10).toString());
+
+    completions.rebuild();
+    completions.add("#tea #tea");
+    assertEquals("[#tent=1]", completions.complete("#t", 10).toString());
+
+    completions.rebuild();
+    assertEquals("[#tea=2, #tent=1]", completions.complete("#t", 10).toString());
+  }
+
+  @Test
+  public void rebuildsWhileAdding() throws Exception {
+    TagCompletions rebuilding = new TagCompletions(new Extractor(), 0, TimeUnit.MILLISECONDS);
+    rebuilding.add("#tent");
+    assertEquals("[#tent=1]", rebuilding.complete("#t", 10).toString());
+  }
+
+  @Test
+  public void matchesExhaustiveSearch() {
+    Random random = new Random(1);
+    List<String> tags = new ArrayList<String>();
+    for (int i = 0; i < 500; i++) {
+      tags.add("#t" + Integer.toString(random.nextInt(2000), 4));
+    }
+    Map<String, Integer> counts = new TreeMap<String, Integer>();
+    for (int i = 0; i < 5000; i++) {
+      // Skews frequencies towards the first tags
+      String tag = tags.get((int) (tags.size() * Math.pow(random.nextDouble(), 3)));
+      completions.add(tag);
+      counts.put(tag, counts.containsKey(tag) ? counts.get(tag) + 1 : 1);
+    }
+    completions.rebuild();
+
+    for (String prefix : new String[] { "#", "#t", "#t1", "#t12", "#t3", "#t333" }) {
+      List<Completion> expected = new ArrayList<Completion>();
+      for (Map.Entry<String, Integer> entry : counts.entrySet()) {
+        if (entry.getKey().startsWith(prefix)) {
+          expected.add(new Completion(entry.getKey(), entry.getValue()));
+        }
+      }
+      // Stable, so ties stay in alphabetical order
+      Collections.sort(expected, new Comparator<Completion>() {
+        @Override
+        public int compare(Completion a, Completion b) {
+          return Long.valueOf(b.getCount()).compareTo(a.getCount());
+        }
+      });
+
+      assertEquals(expected.toString(), completions.complete(prefix, Integer.MAX_VALUE).toString());
+      assertEquals(expected.subList(0, Math.min(5, expected.size())).toString(), completions.complete(prefix, 5)
+          .toString());
+    }
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void prefixMustHaveSymbol() {
+    completions.complete("tent", 10);
+  }
+}
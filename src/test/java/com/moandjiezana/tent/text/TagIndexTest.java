@@ -0,0 +1,86 @@
+package com.moandjiezana.tent.text;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class TagIndexTest {
+  private final TagIndex index = new TagIndex();
+
+  @Test
+  public void indexesTags() {
+    index.index(1, "#Tent and ^alice on $AAPL");
+    index.index(2, "#tent #tent http://example.com/#tent");
+    index.index(3, "^Alice #other");
+
+    assertArrayEquals(new long[] { 1, 2 }, index.getPosts("#TENT"));
+    assertArrayEquals(new long[] { 1, 2 }, index.getPosts("＃tent"));
+    assertArrayEquals(new long[] { 1, 3 }, index.getPosts("^alice"));
+    assertArrayEquals(new long[] { 1 }, index.getPosts("$aapl"));
+    assertArrayEquals(new long[0], index.getPosts("#missing"));
+    assertEquals(4, index.getTagCount());
+  }
+
+  @Test
+  public void andOr() {
+    index.index(1, "#a #b");
+    index.index(2, "#a");
+    index.index(3, "#b #c");
+    index.index(4, "#a #b #c");
+
+    assertArrayEquals(new long[] { 1, 4 }, index.and("#a", "#b"));
+    assertArrayEquals(new long[] { 4 }, index.and("#a", "#b", "#c"));
+    assertArrayEquals(new long[0], index.and("#a", "#missing"));
+    assertArrayEquals(new long[] { 1, 2, 3, 4 }, index.or("#a", "#c"));
+    assertArrayEquals(new long[] { 3, 4 }, index.or("#c", "#missing"));
+  }
+
+  @Test
+  public void outOfOrderAndConcurrentIndexing() throws Exception {
+    final int posts = 20000;
+    final int threads = 4;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<?>> futures = new ArrayList<Future<?>>();
+    for (int t = 0; t < threads; t++) {
+      final int thread = t;
+      futures.add(executor.submit(new Runnable() {
+        @Override
+        public void run() {
+          Random random = new Random(thread);
+          for (int i = 0; i < posts / threads; i++) {
+            long postId = random.nextInt(posts * 10);
+            index.index(postId, "#t" + (postId % 3) + " #all");
+          }
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+
+    TreeSet<Long> expected = new TreeSet<Long>();
+    for (int t = 0; t < threads; t++) {
+      Random random = new Random(t);
+      for (int i = 0; i < posts / threads; i++) {
+        expected.add((long) random.nextInt(posts * 10));
+      }
+    }
+    long[] all = index.getPosts("#all");
+    assertEquals(expected.size(), all.length);
+    int i = 0;
+    for (long postId : expected) {
+      assertEquals(postId, all[i++]);
+    }
+    assertEquals(all.length, index.or("#t0", "#t1", "#t2").length);
+  }
+}
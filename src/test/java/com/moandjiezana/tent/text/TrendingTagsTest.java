@@ -0,0 +1,115 @@
+package com.moandjiezana.tent.text;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.moandjiezana.tent.text.TrendingTags.Trend;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class TrendingTagsTest {
+
+  @Test
+  public void countsCaseFoldedTags() {
+    TrendingTags trending = new TrendingTags(3);
+    trending.offer("#Tent and $AAPL");
+    trending.offer("#tent #TENT http://example.com/#tent");
+    trending.offer("$aapl #other");
+
+    assertEquals(3, trending.estimate("#tent"));
+    assertEquals(3, trending.estimate("#TeNt"));
+    assertEquals(2, trending.estimate("$AAPL"));
+    assertEquals(0, trending.estimate("#missing"));
+    assertEquals("[#tent=3, $aapl=2, #other=1]", trending.getTop().toString());
+  }
+
+  @Test
+  public void keepsOnlyTopK() {
+    TrendingTags trending = new TrendingTags(2);
+    for (int i = 0; i < 100; i++) {
+      trending.offer("#tag" + i);
+    }
+    for (int i = 0; i < 5; i++) {
+      trending.offer("#hot #warm #hot");
+    }
+
+    List<Trend> top = trending.getTop();
+    assertEquals(2, top.size());
+    assertEquals("#hot", top.get(0).getTag());
+    assertEquals(10, top.get(0).getCount());
+    assertEquals("#warm", top.get(1).getTag());
+  }
+
+  @Test
+  public void decays() {
+    TrendingTags trending = new TrendingTags(2);
+    for (int i = 0; i < 8; i++) {
+      trending.offer("#old");
+    }
+    trending.decay();
+    trending.decay();
+    for (int i = 0; i < 3; i++) {
+      trending.offer("#new");
+    }
+
+    assertEquals(2, trending.estimate("#old"));
+    assertEquals("[#new=3, #old=2]", trending.getTop().toString());
+  }
+
+  @Test
+  public void decaysAfterHalfLife() throws Exception {
+    TrendingTags trending = new TrendingTags(2, 1024, 2, 10, TimeUnit.MILLISECONDS);
+    for (int i = 0; i < 8; i++) {
+      trending.offer("#old");
+    }
+    Thread.sleep(20);
+    trending.offer("no tags");
+
+    assertEquals(4, trending.estimate("#old"));
+  }
+
+  @Test
+  public void concurrentOffers() throws Exception {
+    final TrendingTags trending = new TrendingTags(5);
+    final int threads = 4;
+    final int posts = 5000;
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    List<Future<?>> futures = new ArrayList<Future<?>>();
+    for (int t = 0; t < threads; t++) {
+      final int thread = t;
+      futures.add(executor.submit(new Runnable() {
+        @Override
+        public void run() {
+          Random random = new Random(thread);
+          for (int i = 0; i < posts; i++) {
+            trending.offer("#Top #tag" + random.nextInt(1000) + " $TOP");
+          }
+        }
+      }));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    executor.shutdown();
+
+    List<Trend> top = trending.getTop();
+    assertEquals("#top", top.get(0).getTag());
+    assertEquals(threads * posts, top.get(0).getCount());
+    assertEquals("$top", top.get(1).getTag());
+    assertEquals(threads * posts, top.get(1).getCount());
+    assertTrue(top.get(2).getCount() < 100);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void widthMustBePowerOfTwo() {
+    new TrendingTags(10, 1000, 4, 1, TimeUnit.HOURS);
+  }
+}
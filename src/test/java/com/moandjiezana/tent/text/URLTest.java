@@ -1,9 +1,11 @@
 package com.moandjiezana.tent.text;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 import org.junit.Test;
 
@@ -23,6 +25,28 @@ public class URLTest extends ExtractorTest {
     assertEquals(extracted.get(1).getEnd().intValue(), 39);
   }
 
+  @Test
+  public void boundedExtraction() {
+    Extractor.BoundedExtraction extraction = extractor.extractEntitiesWithIndices("^user http://t.co #tag", 1, TimeUnit.SECONDS);
+    assertTrue(extraction.isComplete());
+    assertEquals(3, extraction.getEntities().size());
+  }
+
+  @Test(timeout = 2000)
+  public void boundedExtractionGivesUpOnBacktracking() {
+    StringBuilder text = new StringBuilder("http://t.co #tag www.");
+    for (int i = 0; i < 4000; i++) {
+      // Takes seconds to reject without a deadline
+      text.append("a-");
+    }
+
+    Extractor.BoundedExtraction extraction = extractor.extractEntitiesWithIndices(text.toString(), 20, TimeUnit.MILLISECONDS);
+    assertFalse(extraction.isComplete());
+    assertEquals(2, extraction.getEntities().size());
+    assertEquals("http://t.co", extraction.getEntities().get(0).getValue());
+    assertEquals("tag", extraction.getEntities().get(1).getValue());
+  }
+
   @Test
   public void urlWithoutProtocol() {
     String text = "www.twitter.com, www.yahoo.co.jp, t.co/blahblah, www.poloshirts.uk.com";
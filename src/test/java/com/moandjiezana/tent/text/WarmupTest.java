@@ -0,0 +1,18 @@
+package com.moandjiezana.tent.text;
+
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class WarmupTest {
+
+  @Test
+  public void warmupRespectsTimeBudget() {
+    long start = System.currentTimeMillis();
+    int rounds = Warmup.warmup(200);
+    long elapsed = System.currentTimeMillis() - start;
+
+    assertTrue("Should run at least one round", rounds >= 1);
+    assertTrue("Took " + elapsed + "ms", elapsed < 5000);
+  }
+}